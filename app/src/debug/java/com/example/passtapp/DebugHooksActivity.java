@@ -0,0 +1,187 @@
+package com.example.passtapp;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.widget.TextView;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import androidx.appcompat.app.AppCompatActivity;
+
+/**
+ * Debug builds only: the adb entry point for the benchmark, soak and pool-sweep harnesses and for
+ * pipeline tracing. It lives in the debug source set and its manifest entry requires {@code
+ * android.permission.DUMP}, which only the shell and the system hold, so neither a release build
+ * nor another app can start these runs.
+ *
+ * <pre>
+ * adb shell am start -n com.example.passtapp/.DebugHooksActivity --es benchmark_corpus &lt;dir&gt;
+ * </pre>
+ */
+public class DebugHooksActivity extends AppCompatActivity {
+
+    static final String EXTRA_BENCHMARK_CORPUS = "benchmark_corpus";
+    static final String EXTRA_BENCHMARK_UPDATE_BASELINE = "benchmark_update_baseline";
+    static final String EXTRA_BENCHMARK_USE_CACHE = "benchmark_use_cache";
+    // --ei soak_minutes <n>: leak soak on a synthetic source, report in files/soak/report.json
+    static final String EXTRA_SOAK_MINUTES = "soak_minutes";
+    // --ei pool_sweep_s <n>: windows/s of MultiStreamService at pool sizes 1..3, n s per size
+    static final String EXTRA_POOL_SWEEP_S = "pool_sweep_s";
+    // --ez trace true: record pipeline spans, then open the app; long-press save exports them
+    static final String EXTRA_TRACE = "trace";
+    // --ez upload_local true: upload results to an in-process LocalUploadSink, then open the app
+    static final String EXTRA_UPLOAD_LOCAL = "upload_local";
+
+    // lives as long as the process, like the endpoint override that points at it
+    private static LocalUploadSink localUploadSink;
+
+    private TextView statusText;
+    private AudioSceneAnalyzer analyzer;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        statusText = new TextView(this);
+        int padding = (int) (24 * getResources().getDisplayMetrics().density);
+        statusText.setPadding(padding, padding, padding, padding);
+        setContentView(statusText);
+        statusText.setText("调试入口");
+        // one-shot hooks: a configuration change must not start a second run
+        if (savedInstanceState != null || getIntent() == null) {
+            return;
+        }
+        maybeRunBenchmark();
+        maybeRunPoolSweep();
+        maybeRunSoak();
+        maybeEnableTrace();
+        maybeEnableLocalUpload();
+        if (getIntent().getBooleanExtra(EXTRA_TRACE, false)
+                || getIntent().getBooleanExtra(EXTRA_UPLOAD_LOCAL, false)) {
+            startActivity(new Intent(this, MainActivity.class));
+            finish();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (analyzer != null) {
+            analyzer.release();
+        }
+        super.onDestroy();
+    }
+
+    private void maybeRunBenchmark() {
+        String corpus = getIntent().getStringExtra(EXTRA_BENCHMARK_CORPUS);
+        if (corpus == null || corpus.isEmpty()) {
+            return;
+        }
+        analyzer = new AudioSceneAnalyzer(this);
+        analyzer.runBenchmark(
+                new File(corpus),
+                getIntent().getBooleanExtra(EXTRA_BENCHMARK_UPDATE_BASELINE, false),
+                getIntent().getBooleanExtra(EXTRA_BENCHMARK_USE_CACHE, false),
+                status -> statusText.setText(status),
+                message -> statusText.setText(message));
+    }
+
+    private void maybeRunPoolSweep() {
+        int seconds = getIntent().getIntExtra(EXTRA_POOL_SWEEP_S, 0);
+        if (seconds <= 0) {
+            return;
+        }
+        statusText.setText("多流吞吐测试中...");
+        Thread sweep =
+                new Thread(
+                        () -> {
+                            String report;
+                            try {
+                                // 4 streams keep even the largest pool busy; 20 s covers load
+                                double[] rates =
+                                        MultiStreamService.measurePoolSizes(
+                                                this, 32_000, 4, 20_000L, seconds * 1000L);
+                                StringBuilder sb = new StringBuilder("多流吞吐 (窗口/秒):");
+                                for (int i = 0; i < rates.length; i++) {
+                                    sb.append(
+                                            String.format(
+                                                    Locale.US,
+                                                    "\n池大小 %d: %.2f",
+                                                    i + 1,
+                                                    rates[i]));
+                                }
+                                report = sb.toString();
+                            } catch (Exception ex) {
+                                report = "多流吞吐测试失败: " + ex.getLocalizedMessage();
+                            }
+                            String result = report;
+                            runOnUiThread(() -> statusText.setText(result));
+                        },
+                        "PoolSweep");
+        sweep.setDaemon(true);
+        sweep.start();
+    }
+
+    private void maybeRunSoak() {
+        int minutes = getIntent().getIntExtra(EXTRA_SOAK_MINUTES, 0);
+        if (minutes <= 0) {
+            return;
+        }
+        File dir = getExternalFilesDir("soak");
+        if (dir == null) {
+            dir = new File(getFilesDir(), "soak");
+        }
+        SoakHarness harness =
+                new SoakHarness(
+                        this,
+                        SoakHarness.Config.forDuration(minutes * 60_000L),
+                        new File(dir, "report.json"));
+        statusText.setText("耐久测试中...");
+        harness.start(
+                new SoakHarness.Listener() {
+                    @Override
+                    public void onProgress(String status) {
+                        runOnUiThread(() -> statusText.setText(status));
+                    }
+
+                    @Override
+                    public void onFinished(File report, boolean passed) {
+                        String verdict = passed ? "耐久测试通过: " : "耐久测试未通过: ";
+                        runOnUiThread(
+                                () -> statusText.setText(verdict + report.getAbsolutePath()));
+                    }
+
+                    @Override
+                    public void onFailed(Exception error) {
+                        runOnUiThread(
+                                () ->
+                                        statusText.setText(
+                                                "耐久测试失败: " + error.getLocalizedMessage()));
+                    }
+                });
+    }
+
+    private void maybeEnableTrace() {
+        if (!getIntent().getBooleanExtra(EXTRA_TRACE, false)) {
+            return;
+        }
+        // the trace ring is process-wide, so the app's own analyzer records into it
+        PipelineTrace.clear();
+        PipelineTrace.setEnabled(true);
+    }
+
+    private void maybeEnableLocalUpload() {
+        if (!getIntent().getBooleanExtra(EXTRA_UPLOAD_LOCAL, false)) {
+            return;
+        }
+        synchronized (DebugHooksActivity.class) {
+            if (localUploadSink == null) {
+                try {
+                    localUploadSink = new LocalUploadSink();
+                } catch (IOException ex) {
+                    statusText.setText("本地接收端启动失败: " + ex.getLocalizedMessage());
+                    return;
+                }
+            }
+            AppSettings.overrideUploadEndpoint(localUploadSink.getEndpoint());
+        }
+    }
+}
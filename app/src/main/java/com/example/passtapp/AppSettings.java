@@ -0,0 +1,84 @@
+package com.example.passtapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * User-facing feature switches, persisted in shared preferences and edited from the settings
+ * dialog in {@link MainActivity}. Every switch defaults to off, which is the plain streaming
+ * pipeline. The result upload endpoint is build configuration ({@code R.string.upload_endpoint}),
+ * not a user setting.
+ */
+final class AppSettings {
+
+    private static final String PREFS = "passt_settings";
+
+    private static volatile String uploadEndpointOverride;
+
+    /** Slot period used when duty-cycled capture is on. */
+    static final long DUTY_CYCLE_PERIOD_MS = 60_000L;
+
+    /** Switches in the order the settings dialog lists them. */
+    enum Toggle {
+        DUTY_CYCLE("duty_cycle", R.string.setting_duty_cycle),
+        DUTY_CYCLE_ADAPTIVE("duty_cycle_adaptive", R.string.setting_duty_cycle_adaptive),
+        EVENT_DETECTION("event_detection", R.string.setting_event_detection),
+        EVENT_CAPTURE("event_capture", R.string.setting_event_capture),
+        CASCADE("cascade", R.string.setting_cascade),
+        ARCHIVE_ADPCM("archive_adpcm", R.string.setting_archive_adpcm);
+
+        final String key;
+        final int titleResId;
+
+        Toggle(String key, int titleResId) {
+            this.key = key;
+            this.titleResId = titleResId;
+        }
+    }
+
+    private final Context appContext;
+    private final SharedPreferences prefs;
+
+    AppSettings(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Points uploads at {@code endpoint} until the process exits. Only the debug build's hooks call
+     * this, to aim uploads at a {@link LocalUploadSink}.
+     */
+    static void overrideUploadEndpoint(String endpoint) {
+        uploadEndpointOverride = endpoint;
+    }
+
+    /** Where results are uploaded; empty when this build has no endpoint configured. */
+    String getUploadEndpoint() {
+        String override = uploadEndpointOverride;
+        return override != null ? override : appContext.getString(R.string.upload_endpoint);
+    }
+
+    boolean isEnabled(Toggle toggle) {
+        return prefs.getBoolean(toggle.key, false);
+    }
+
+    /** Current state of every switch, indexed by {@link Toggle#ordinal()}. */
+    boolean[] snapshot() {
+        Toggle[] toggles = Toggle.values();
+        boolean[] state = new boolean[toggles.length];
+        for (int i = 0; i < toggles.length; i++) {
+            state[i] = isEnabled(toggles[i]);
+        }
+        return state;
+    }
+
+    /** Stores {@code state} (indexed by {@link Toggle#ordinal()}) in one commit. */
+    void save(boolean[] state) {
+        SharedPreferences.Editor editor = prefs.edit();
+        Toggle[] toggles = Toggle.values();
+        for (int i = 0; i < toggles.length; i++) {
+            editor.putBoolean(toggles[i].key, state[i]);
+        }
+        editor.apply();
+    }
+}
@@ -1,22 +1,24 @@
 package com.example.passtapp;
 
-import android.annotation.SuppressLint;
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.media.AudioFormat;
-import android.media.AudioManager;
-import android.media.AudioRecord;
-import android.media.AudioTrack;
-import android.media.MediaRecorder;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.SystemClock;
 import android.os.Environment;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 public class AudioSceneAnalyzer {
@@ -24,171 +26,709 @@ public class AudioSceneAnalyzer {
     private static final int SAMPLE_RATE = 32_000;
     private static final int CLIP_SECONDS = 10;
     private static final int CHUNK_SIZE = 2048;
+    private static final long TIMELINE_SEGMENT_BYTES = 8L * 1024 * 1024;
+    private static final int TIMELINE_MAX_SEGMENTS = 24;
+    private static final long LOGITS_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final long MEMORY_RESTORE_QUIET_MS = 30_000L;
+    /** How long {@link #release} waits for a forward in flight before leaving the model alone. */
+    private static final long RELEASE_WAIT_MS = 3_000L;
+
+    /** Memory-pressure stages; each includes the ones below it. */
+    static final int MEMORY_NORMAL = 0;
+    /** Stop retaining the last raw/denoised windows for playback and save. */
+    static final int MEMORY_NO_SNAPSHOTS = 1;
+    /** Drop in-memory caches (logits LRU). */
+    static final int MEMORY_SHRUNK = 2;
+    /** Classify the most recent 5 s instead of 10 s, halving per-cycle allocations. */
+    static final int MEMORY_SHORT_WINDOW = 3;
+    /** Unload the model; capture continues, inference stops until memory recovers. */
+    static final int MEMORY_MODEL_UNLOADED = 4;
     private static final float MIN_AVG_AMPLITUDE = 1e-4f;
+    private static final String RELEASED_MESSAGE = "分析器已释放";
 
     private final PaSSTModule passtModule;
     private final int expectedSamples;
-    private final float normalizer;
     private final Context appContext;
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final TimelineStore timelineStore;
+    private final PlaybackEngine playbackEngine;
+    private final EventPipeline events;
 
-    private final AtomicBoolean running = new AtomicBoolean(false);
     private final AtomicBoolean inferring = new AtomicBoolean(false);
     private final ExecutorService inferenceExecutor =
             Executors.newSingleThreadExecutor(
                     r -> {
-                        Thread t = new Thread(r, "AudioInference");
+                        Thread t =
+                                new Thread(
+                                        () -> {
+                                            InferenceTuner.applyInferencePriority();
+                                            r.run();
+                                        },
+                                        "AudioInference");
                         t.setDaemon(true);
                         return t;
                     });
-    private Thread streamingThread;
+    private final Object pauseLock = new Object();
+    private volatile Thread streamingThread;
+    // stop flag of the current loop; each start gets a fresh one so a late loop never sees a
+    // later session's flag
+    private volatile AtomicBoolean session;
+    private volatile boolean paused;
     private volatile float[] lastSnapshot;
     private volatile float[] lastRawSnapshot;
     private volatile NoiseMode currentNoiseMode = NoiseMode.STANDARD;
+    private volatile PolyphaseResampler.Quality resamplerQuality =
+            PolyphaseResampler.Quality.BALANCED;
+    private volatile WavWriter.Format archiveFormat = WavWriter.Format.PCM16;
+    private volatile PcmSource.Factory sourceFactory;
+    private volatile ResultUploader resultUploader;
+    private volatile DutyCycleRunner dutyRunner;
+    private volatile int memoryStage = MEMORY_NORMAL;
+    private volatile long lastTrimMs;
+    private volatile long ringBytes;
+    private final Runnable memoryRestore = this::maybeRestoreMemoryStage;
+    private final AtomicBoolean calibrationQueued = new AtomicBoolean();
 
     public AudioSceneAnalyzer(Context context) {
+        this(context, context.getApplicationContext().getFilesDir());
+    }
+
+    /**
+     * Keeps the timeline and the logits cache under {@code dataDir} instead of the app's files
+     * dir, so harness runs do not write synthetic results into the user's history.
+     */
+    AudioSceneAnalyzer(Context context, File dataDir) {
         this.appContext = context.getApplicationContext();
         this.passtModule = new PaSSTModule(this.appContext, SAMPLE_RATE);
+        this.passtModule.setLogitsCache(
+                new LogitsCache(new File(dataDir, "logits_cache"), LOGITS_CACHE_BYTES));
         this.expectedSamples = SAMPLE_RATE * CLIP_SECONDS;
-        this.normalizer = 1f / Short.MAX_VALUE;
+        this.timelineStore =
+                new TimelineStore(
+                        new File(dataDir, "timeline"),
+                        TIMELINE_SEGMENT_BYTES,
+                        TIMELINE_MAX_SEGMENTS);
+        this.playbackEngine = new PlaybackEngine(SAMPLE_RATE);
+        this.events =
+                new EventPipeline(
+                        SAMPLE_RATE,
+                        new File(resolveExportDir(), "events"),
+                        passtModule::getLabelName,
+                        mainHandler);
     }
 
     public SceneResult captureAndClassify() {
         float[] buffer = new float[expectedSamples];
-        AudioRecord audioRecord = buildRecorder();
-        try {
-            audioRecord.startRecording();
+        try (PcmSource source = openSource()) {
+            source.start();
+            PolyphaseResampler resampler =
+                    new PolyphaseResampler(source.getSampleRate(), SAMPLE_RATE, resamplerQuality);
+            float[] nativeChunk = new float[CHUNK_SIZE];
+            float[] resampled = new float[resampler.maxOutput(CHUNK_SIZE)];
             int totalRead = 0;
-            short[] pcm = new short[expectedSamples];
-            while (totalRead < pcm.length) {
-                int read =
-                        audioRecord.read(
-                                pcm,
-                                totalRead,
-                                pcm.length - totalRead,
-                                AudioRecord.READ_BLOCKING);
-                if (read < 0) {
-                    throw new IllegalStateException("AudioRecord read failed: " + read);
-                }
-                if (read == 0) {
+            while (totalRead < buffer.length) {
+                int read = source.read(nativeChunk, 0, nativeChunk.length);
+                if (read <= 0) {
                     break;
                 }
-                totalRead += read;
-            }
-            for (int i = 0; i < buffer.length; i++) {
-                buffer[i] = i < totalRead ? pcm[i] * normalizer : 0f;
+                int produced = resampler.process(nativeChunk, 0, read, resampled, 0);
+                int copy = Math.min(produced, buffer.length - totalRead);
+                System.arraycopy(resampled, 0, buffer, totalRead, copy);
+                totalRead += copy;
             }
             return passtModule.classify(buffer, totalRead);
-        } finally {
-            try {
-                audioRecord.stop();
-            } catch (Exception ignored) {
-                // ignore stop failure
-            }
-            audioRecord.release();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Audio source read failed", ex);
         }
     }
 
+    /**
+     * Replaces the microphone with another PCM source for subsequent captures, e.g. a WAV file or
+     * a synthetic signal for reproducible runs. {@code null} restores the microphone. Takes effect
+     * on the next {@link #startStreaming} or {@link #captureAndClassify}.
+     */
+    void setSourceFactory(PcmSource.Factory factory) {
+        this.sourceFactory = factory;
+    }
+
     public synchronized void startStreaming(
             ResultCallback onResult,
             StatusCallback onStatus,
             ErrorCallback onError,
             InferenceTimeCallback onInferenceTime) {
-        if (running.get()) {
+        if (isRunning()) {
             return;
         }
-        running.set(true);
+        AtomicBoolean active = new AtomicBoolean(true);
+        session = active;
+        paused = false;
+        Thread previous = streamingThread;
         streamingThread =
                 new Thread(
-                        () -> runStreamingLoop(onResult, onStatus, onError, onInferenceTime),
+                        () -> {
+                            // the old loop releases its source on exit; wait here, not on the UI
+                            awaitExit(previous);
+                            runStreamingLoop(
+                                    active, onResult, onStatus, onError, onInferenceTime);
+                        },
                         "AudioSceneStreaming");
         streamingThread.start();
     }
 
+    /** Signals the loop to stop and returns at once; the loop releases its own source. */
     public synchronized void stopStreaming() {
-        running.set(false);
-        if (streamingThread != null) {
-            try {
-                streamingThread.join(500);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-            streamingThread = null;
+        AtomicBoolean active = session;
+        if (active != null) {
+            active.set(false);
+        }
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
         }
     }
 
-    @SuppressLint("MissingPermission")
-    private AudioRecord buildRecorder() {
-        int minBuffer =
-                AudioRecord.getMinBufferSize(
+    /**
+     * Battery-saving alternative to {@link #startStreaming}: the microphone is opened for one
+     * window per slot (see {@link DutyCycleRunner}). {@link #stopStreaming}, {@link
+     * #pauseStreaming} and {@link #release} apply as for streaming.
+     *
+     * <p>Event capture is not fed in this mode: its pre- and post-roll assume continuous audio.
+     */
+    synchronized void startDutyCycle(
+            DutyCycle.Config config,
+            ResultCallback onResult,
+            StatusCallback onStatus,
+            ErrorCallback onError,
+            InferenceTimeCallback onInferenceTime) {
+        if (isRunning()) {
+            return;
+        }
+        AtomicBoolean active = new AtomicBoolean(true);
+        session = active;
+        paused = false;
+        DutyCycleRunner runner =
+                new DutyCycleRunner(
+                        config,
                         SAMPLE_RATE,
-                        AudioFormat.CHANNEL_IN_MONO,
-                        AudioFormat.ENCODING_PCM_16BIT);
-        int bufferSize = Math.max(minBuffer, CHUNK_SIZE * 2);
-        return new AudioRecord(
-                MediaRecorder.AudioSource.MIC,
-                SAMPLE_RATE,
-                AudioFormat.CHANNEL_IN_MONO,
-                AudioFormat.ENCODING_PCM_16BIT,
-                bufferSize);
+                        CHUNK_SIZE,
+                        expectedSamples,
+                        new DutyHost(onResult, onStatus, onError, onInferenceTime));
+        dutyRunner = runner;
+        Thread previous = streamingThread;
+        streamingThread =
+                new Thread(
+                        () -> {
+                            awaitExit(previous);
+                            runner.run(active);
+                        },
+                        "AudioSceneDutyCycle");
+        streamingThread.start();
+    }
+
+    /** Duty ratio and mic-on time of the current or last duty cycle; null if none has run. */
+    DutyCycle.Stats getDutyCycleStats() {
+        DutyCycleRunner runner = dutyRunner;
+        return runner != null ? runner.getStats() : null;
+    }
+
+    /**
+     * Suspends capture and inference but keeps the source open, the ring buffer filled and the
+     * model loaded. Returns immediately.
+     */
+    public void pauseStreaming() {
+        if (isRunning()) {
+            paused = true;
+        }
+    }
+
+    /**
+     * Continues after {@link #pauseStreaming}. The ring still holds the pre-pause audio, which is
+     * used as-is, so the next result arrives after one inference instead of a 10 s refill.
+     */
+    public void resumeStreaming() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused && isRunning();
+    }
+
+    private boolean isRunning() {
+        AtomicBoolean active = session;
+        return active != null && active.get();
+    }
+
+    /**
+     * Turns pipeline tracing on or off. Enabling clears the ring so an export covers only the
+     * run being investigated.
+     */
+    public void setTracingEnabled(boolean enabled) {
+        if (enabled && !PipelineTrace.isEnabled()) {
+            PipelineTrace.clear();
+        }
+        PipelineTrace.setEnabled(enabled);
+    }
+
+    /** Writes the trace ring as Chrome trace JSON next to the WAV exports; null on failure. */
+    public String exportTrace() {
+        File outFile =
+                new File(
+                        resolveExportDir(),
+                        String.format(
+                                Locale.US, "trace_%d.json", System.currentTimeMillis()));
+        try {
+            PipelineTrace.writeChromeJson(outFile);
+        } catch (IOException e) {
+            return null;
+        }
+        return outFile.getAbsolutePath();
+    }
+
+    /** Trades resampler CPU for stopband quality; takes effect on the next recorder start. */
+    void setResamplerQuality(PolyphaseResampler.Quality quality) {
+        if (quality != null) {
+            resamplerQuality = quality;
+        }
+    }
+
+    /** Encoding used for exported and recorded WAV files; IMA-ADPCM is ~4x smaller than PCM16. */
+    void setArchiveFormat(WavWriter.Format format) {
+        if (format != null) {
+            archiveFormat = format;
+            events.setFormat(format);
+        }
+    }
+
+    /**
+     * Saves pre-roll + post-roll clips to {@code Music/events} whenever {@code config} fires.
+     * Replaces any previous configuration.
+     */
+    void enableEventCapture(
+            TriggerRecorder.Config config, ClipCallback onClip, ErrorCallback onError) {
+        events.enableCapture(config, onClip, onError);
+    }
+
+    public void disableEventCapture() {
+        events.disableCapture();
+    }
+
+    /**
+     * Reports per-label sound events (onset, then offset with peak confidence) across all labels,
+     * fed by every result. Replaces any previous configuration; open events are closed first.
+     */
+    void enableEventDetection(EventDetector.Config config, SoundEventCallback onEvent) {
+        events.enableDetection(config, onEvent);
+    }
+
+    public void disableEventDetection() {
+        events.disableDetection();
+    }
+
+    /**
+     * Batches every streaming result to {@code endpoint} (gzip'd JSON POSTs). Batches are spooled
+     * under {@code files/uploads} until delivered, so results made offline go out later.
+     */
+    public synchronized void enableResultUpload(
+            String endpoint, StatusCallback onStatus, ErrorCallback onError) {
+        disableResultUpload();
+        resultUploader =
+                new ResultUploader(
+                        ResultUploader.Config.defaults(endpoint),
+                        new File(appContext.getFilesDir(), "uploads"),
+                        new ResultUploader.Listener() {
+                            @Override
+                            public void onDelivered(int batches, int bytes) {
+                                postStatus(onStatus, "已上传 " + batches + " 批 (" + bytes + " B)");
+                            }
+
+                            @Override
+                            public void onFailed(String reason) {
+                                postError(onError, "上传失败: " + reason);
+                            }
+                        });
+    }
+
+    /** Stops uploading; pending results are spooled and one last delivery is attempted. */
+    public synchronized void disableResultUpload() {
+        ResultUploader uploader = resultUploader;
+        resultUploader = null;
+        if (uploader != null) {
+            uploader.release();
+        }
+    }
+
+    /**
+     * Forward of {@link ComponentCallbacks2#onTrimMemory}; degrades by the signalled level. Stages
+     * only escalate on a signal. After 30 s without one, and while the system does not report low
+     * memory, they step back one at a time, reloading the model on the inference thread when
+     * leaving {@link #MEMORY_MODEL_UNLOADED}.
+     */
+    public void onTrimMemory(int level) {
+        int stage;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            stage = MEMORY_MODEL_UNLOADED;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            stage = MEMORY_SHORT_WINDOW;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            stage = MEMORY_SHRUNK;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            stage = MEMORY_NO_SNAPSHOTS;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            // still in the foreground: keep the model, it is the whole point of the app
+            stage = MEMORY_SHORT_WINDOW;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            stage = MEMORY_SHRUNK;
+        } else {
+            stage = MEMORY_NO_SNAPSHOTS;
+        }
+        raiseMemoryStage(stage);
+    }
+
+    public void onLowMemory() {
+        raiseMemoryStage(MEMORY_MODEL_UNLOADED);
+    }
+
+    public int getMemoryStage() {
+        return memoryStage;
+    }
+
+    /** What the analyzer itself is holding right now, plus process heap totals. */
+    public MemoryReport getMemoryReport() {
+        float[] raw = lastRawSnapshot;
+        float[] processed = lastSnapshot;
+        long snapshots =
+                (raw != null ? raw.length : 0) + (processed != null ? processed.length : 0);
+        LogitsCache cache = passtModule.getLogitsCache();
+        Runtime runtime = Runtime.getRuntime();
+        return new MemoryReport(
+                memoryStage,
+                ringBytes,
+                snapshots * 4L,
+                events.getBufferBytes(),
+                cache != null ? cache.getMemoryBytes() : 0,
+                passtModule.estimateModelBytes(),
+                runtime.totalMemory() - runtime.freeMemory(),
+                Debug.getNativeHeapAllocatedSize());
+    }
+
+    private void raiseMemoryStage(int stage) {
+        lastTrimMs = SystemClock.elapsedRealtime();
+        if (stage > memoryStage) {
+            applyMemoryStage(stage);
+        }
+        mainHandler.removeCallbacks(memoryRestore);
+        mainHandler.postDelayed(memoryRestore, MEMORY_RESTORE_QUIET_MS);
+    }
+
+    /** Steps back one stage per quiet period while the system is not low on memory. */
+    private void maybeRestoreMemoryStage() {
+        if (memoryStage == MEMORY_NORMAL) {
+            return;
+        }
+        boolean quiet = SystemClock.elapsedRealtime() - lastTrimMs >= MEMORY_RESTORE_QUIET_MS;
+        if (quiet && !isSystemLowOnMemory()) {
+            applyMemoryStage(memoryStage - 1);
+        }
+        if (memoryStage != MEMORY_NORMAL) {
+            mainHandler.postDelayed(memoryRestore, MEMORY_RESTORE_QUIET_MS);
+        }
+    }
+
+    private synchronized void applyMemoryStage(int stage) {
+        int previous = memoryStage;
+        memoryStage = stage;
+        if (stage >= MEMORY_NO_SNAPSHOTS) {
+            lastRawSnapshot = null;
+            lastSnapshot = null;
+        }
+        LogitsCache cache = passtModule.getLogitsCache();
+        if (cache != null) {
+            cache.setMemoryEnabled(stage < MEMORY_SHRUNK);
+        }
+        // both on the inference thread, so neither can race a forward in progress
+        if (stage >= MEMORY_MODEL_UNLOADED && previous < MEMORY_MODEL_UNLOADED) {
+            runOnInference(passtModule::release);
+        } else if (stage < MEMORY_MODEL_UNLOADED
+                && previous >= MEMORY_MODEL_UNLOADED
+                && isRunning()) {
+            runOnInference(() -> loadModelForStreaming(null, null));
+        }
+    }
+
+    /**
+     * Queues {@code task} on the inference thread. Returns false, without running it, once {@link
+     * #release} has shut that thread down.
+     */
+    private boolean runOnInference(Runnable task) {
+        try {
+            inferenceExecutor.execute(task);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    private boolean isSystemLowOnMemory() {
+        ActivityManager am =
+                (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am == null) {
+            return false;
+        }
+        ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+        am.getMemoryInfo(info);
+        return info.lowMemory;
+    }
+
+    private void awaitResume(AtomicBoolean active) {
+        synchronized (pauseLock) {
+            while (paused && active.get()) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void awaitExit(Thread thread) {
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private PcmSource openSource() throws IOException {
+        PcmSource.Factory factory = sourceFactory;
+        return factory != null
+                ? factory.create()
+                : new MicSource(appContext, SAMPLE_RATE, CHUNK_SIZE);
     }
 
     public void release() {
+        mainHandler.removeCallbacks(memoryRestore);
         stopStreaming();
-        passtModule.release();
+        events.release();
+        disableResultUpload();
+        // drop queued work, then let a forward in flight finish: destroying the module under it
+        // would free native memory the forward is still using
         inferenceExecutor.shutdownNow();
+        boolean idle = false;
+        try {
+            idle = inferenceExecutor.awaitTermination(RELEASE_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (idle) {
+            passtModule.release();
+        }
+        // otherwise the module is left to the garbage collector
+        playbackEngine.release();
+        timelineStore.close();
+    }
+
+    /**
+     * Max/mean series of one label over a time range, read from the on-disk timeline.
+     *
+     * @param label AudioSet index, English display name or localized name
+     */
+    TimelineStore.Series queryTimeline(String label, long fromMs, long toMs, int buckets)
+            throws IOException {
+        int index = findLabelIndex(label);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown label: " + label);
+        }
+        return timelineStore.querySeries(index, fromMs, toMs, buckets);
+    }
+
+    List<TimelineStore.SceneEntry> queryTimelineScenes(
+            long fromMs, long toMs, int maxEntries) throws IOException {
+        return timelineStore.queryScenes(fromMs, toMs, maxEntries);
+    }
+
+    /**
+     * Recompiles scene rules from {@code files/scene_rules.json} (or the bundled default). Edits to
+     * that file are also picked up automatically within a few seconds.
+     */
+    public void reloadSceneRules() {
+        passtModule.reloadSceneRules();
+    }
+
+    /** Re-runs the PyTorch thread-count calibration on the inference thread. */
+    public void recalibrateInferenceThreads(StatusCallback onStatus, ErrorCallback onError) {
+        boolean queued =
+                runOnInference(
+                        () -> {
+                            try {
+                                passtModule.recalibrateThreads();
+                                postStatus(onStatus, "推理后端: " + passtModule.getBackendName());
+                            } catch (Exception ex) {
+                                postError(
+                                        onError,
+                                        ex.getLocalizedMessage() != null
+                                                ? ex.getLocalizedMessage()
+                                                : ex.toString());
+                            }
+                        });
+        if (!queued) {
+            postError(onError, RELEASED_MESSAGE);
+        }
+    }
+
+    /**
+     * Puts the small student model ({@code assets/student_model.pt}) in front of PaSST: windows it
+     * is sure about skip the transformer. Loads on the inference thread; failures go to {@code
+     * onError} and leave PaSST-only inference in place.
+     */
+    public void enableCascade(StatusCallback onStatus, ErrorCallback onError) {
+        boolean queued =
+                runOnInference(
+                        () -> {
+                            try {
+                                passtModule.enableCascade(ModelCascade.Config.defaults());
+                                postStatus(onStatus, "级联推理已启用");
+                            } catch (Exception ex) {
+                                postError(
+                                        onError, "级联模型加载失败: " + ex.getLocalizedMessage());
+                            }
+                        });
+        if (!queued) {
+            postError(onError, RELEASED_MESSAGE);
+        }
+    }
+
+    /** Back to PaSST-only inference; a no-op once released, when the model is gone anyway. */
+    public void disableCascade() {
+        runOnInference(passtModule::disableCascade);
+    }
+
+    /** Hit rate and audit agreement of the cascade; null while it is off. */
+    ModelCascade.Stats getCascadeStats() {
+        ModelCascade cascade = passtModule.getCascade();
+        return cascade != null ? cascade.getStats() : null;
+    }
+
+    /** Resolves an AudioSet index, English display name or localized name; -1 if unknown. */
+    public int findLabelIndex(String label) {
+        if (label == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(label.trim());
+        } catch (NumberFormatException ignored) {
+            return passtModule.findLabelIndex(label);
+        }
+    }
+
+    private void recordTimeline(SceneResult result, ErrorCallback onError) {
+        if (result == null || result.getProbabilities() == null) {
+            return;
+        }
+        String scene = result.getScene() != null ? result.getScene().getScene() : null;
+        try {
+            timelineStore.append(result.getTimestampMs(), scene, result.getProbabilities());
+        } catch (IOException ex) {
+            postError(onError, "时间线写入失败: " + ex.getLocalizedMessage());
+        }
     }
 
     private void runStreamingLoop(
+            AtomicBoolean active,
             ResultCallback onResult,
             StatusCallback onStatus,
             ErrorCallback onError,
             InferenceTimeCallback onInferenceTime) {
         float[] ringBuffer = new float[expectedSamples];
-        short[] pcmChunk = new short[CHUNK_SIZE];
+        ringBytes = ringBuffer.length * 4L;
+        float[] nativeChunk = new float[CHUNK_SIZE];
         int writePos = 0;
         boolean filled = false;
-        AudioRecord recorder = buildRecorder();
+        PcmSource source = null;
+        InferenceTuner.applyCapturePriority();
         try {
-            recorder.startRecording();
-            postStatus(onStatus, "正在收音...");
-            postStatus(onStatus, "推理后端: " + passtModule.getBackendName());
-            while (running.get() && !Thread.currentThread().isInterrupted()) {
-                int read =
-                        recorder.read(pcmChunk, 0, pcmChunk.length, AudioRecord.READ_BLOCKING);
-                if (read < 0) {
-                    postError(onError, "录音失败: " + read);
+            source = openSource();
+            PolyphaseResampler resampler =
+                    new PolyphaseResampler(source.getSampleRate(), SAMPLE_RATE, resamplerQuality);
+            float[] resampled = new float[resampler.maxOutput(CHUNK_SIZE)];
+            source.start();
+            postStatus(onStatus, "正在收音: " + source.describe());
+            postStatus(
+                    onStatus,
+                    "采样率: " + resampler.getInputRate() + " Hz → " + SAMPLE_RATE + " Hz");
+            // load + thread calibration belong on the inference thread, not the capture thread
+            runOnInference(() -> loadModelForStreaming(onStatus, onError));
+            while (active.get() && !Thread.currentThread().isInterrupted()) {
+                if (paused) {
+                    postStatus(onStatus, "已暂停");
+                    awaitResume(active);
+                    if (!active.get()) {
+                        break;
+                    }
+                    // the ring keeps its pre-pause contents: stale, but good enough for the next
+                    // result while fresh audio overwrites it
+                    postStatus(onStatus, filled ? "已恢复，沿用暂停前缓冲" : "已恢复");
+                    continue;
+                }
+                int read;
+                long readSpan = PipelineTrace.begin(PipelineTrace.READ);
+                try {
+                    read = source.read(nativeChunk, 0, nativeChunk.length);
+                } catch (IOException ex) {
+                    postError(onError, "录音失败: " + ex.getLocalizedMessage());
                     continue;
+                } finally {
+                    PipelineTrace.end(PipelineTrace.READ, readSpan);
+                }
+                if (read == PcmSource.END_OF_STREAM) {
+                    postStatus(onStatus, "音源结束");
+                    break;
                 }
                 if (read == 0) {
                     continue;
                 }
-                for (int i = 0; i < read; i++) {
-                    ringBuffer[writePos] = pcmChunk[i] * normalizer;
+                int produced = resampler.process(nativeChunk, 0, read, resampled, 0);
+                for (int i = 0; i < produced; i++) {
+                    ringBuffer[writePos] = resampled[i];
                     writePos = (writePos + 1) % ringBuffer.length;
                     if (writePos == 0) {
                         filled = true;
                     }
                 }
+                events.onAudio(resampled, 0, produced);
                 // Start inference immediately when previous one完成
-                if (filled && !inferring.get()) {
-                    float[] snapshot = new float[ringBuffer.length];
-                    int idx = writePos;
-                    float sumAbs = 0f;
+                int stage = memoryStage;
+                if (filled && !inferring.get() && stage < MEMORY_MODEL_UNLOADED) {
+                    long windowSpan = PipelineTrace.begin(PipelineTrace.WINDOW);
+                    int windowLength =
+                            stage >= MEMORY_SHORT_WINDOW
+                                    ? ringBuffer.length / 2
+                                    : ringBuffer.length;
+                    long windowEndMs = System.currentTimeMillis();
+                    float[] snapshot = new float[windowLength];
+                    int idx = (writePos + ringBuffer.length - windowLength) % ringBuffer.length;
                     for (int i = 0; i < snapshot.length; i++) {
-                        float value = ringBuffer[idx];
-                        snapshot[i] = value;
-                        sumAbs += Math.abs(value);
-                        idx = (idx + 1) % snapshot.length;
+                        snapshot[i] = ringBuffer[idx];
+                        idx = (idx + 1) % ringBuffer.length;
                     }
-                    lastRawSnapshot = snapshot;
-                    float[] processed = applyNoiseReduction(snapshot, currentNoiseMode);
-                    lastSnapshot = processed;
-                    float avg = sumAbs / snapshot.length;
-                    if (avg < MIN_AVG_AMPLITUDE) {
-                        postError(onError, "音量过小，未检测到有效信号。");
-                    } else {
-                        dispatchInference(processed, onResult, onStatus, onError, onInferenceTime);
+                    PipelineTrace.end(PipelineTrace.WINDOW, windowSpan);
+                    float[] processed = prepareWindow(snapshot, stage, onError);
+                    if (processed != null) {
+                        dispatchInference(
+                                processed,
+                                windowEndMs - windowLength * 1000L / SAMPLE_RATE,
+                                windowEndMs,
+                                onResult,
+                                onStatus,
+                                onError,
+                                onInferenceTime);
                     }
                 }
             }
@@ -199,18 +739,90 @@ public class AudioSceneAnalyzer {
                             ? ex.getLocalizedMessage()
                             : ex.toString());
         } finally {
-            try {
-                recorder.stop();
-            } catch (Exception ignored) {
-                // ignore stop failure
+            if (source != null) {
+                source.close();
             }
-            recorder.release();
+            ringBytes = 0;
+            // a finite source ended on its own; let the next startStreaming() through
+            active.set(false);
+            flushEventDetector();
             postStatus(onStatus, "已停止");
         }
     }
 
+    /**
+     * Retains {@code window} for playback and save unless {@code stage} forbids it and returns its
+     * denoised copy; null, after reporting it, if the window is too quiet to classify.
+     */
+    private float[] prepareWindow(float[] window, int stage, ErrorCallback onError) {
+        boolean retain = stage < MEMORY_NO_SNAPSHOTS;
+        lastRawSnapshot = retain ? window : null;
+        float sumAbs = 0f;
+        for (float value : window) {
+            sumAbs += Math.abs(value);
+        }
+        long denoiseSpan = PipelineTrace.begin(PipelineTrace.DENOISE);
+        float[] processed = applyNoiseReduction(window, currentNoiseMode);
+        PipelineTrace.end(PipelineTrace.DENOISE, denoiseSpan);
+        lastSnapshot = retain ? processed : null;
+        if (sumAbs / window.length < MIN_AVG_AMPLITUDE) {
+            postError(onError, "音量过小，未检测到有效信号。");
+            return null;
+        }
+        return processed;
+    }
+
+    /** Closes open events once capture ends; after the last queued inference, not before it. */
+    private void flushEventDetector() {
+        Runnable flush = events.detectorFlush();
+        if (flush != null && !runOnInference(flush)) {
+            flush.run();
+        }
+    }
+
+    /**
+     * Queues the first-load thread calibration behind the result that was just published, so the
+     * first result is not held up by it. Windows arriving meanwhile are skipped as usual.
+     */
+    private void maybeCalibrateThreads(StatusCallback onStatus) {
+        if (!passtModule.needsThreadCalibration()
+                || !calibrationQueued.compareAndSet(false, true)) {
+            return;
+        }
+        boolean queued =
+                runOnInference(
+                        () -> {
+                            try {
+                                postStatus(onStatus, "正在校准推理线程数...");
+                                passtModule.calibrateThreadsIfNeeded();
+                                postStatus(onStatus, "推理后端: " + passtModule.getBackendName());
+                            } catch (RuntimeException ex) {
+                                // keep the default count; a later result tries again
+                                postStatus(onStatus, "线程校准失败，沿用默认线程数");
+                            } finally {
+                                calibrationQueued.set(false);
+                            }
+                        });
+        if (!queued) {
+            // released; the next load calibrates
+            calibrationQueued.set(false);
+        }
+    }
+
+    private void loadModelForStreaming(StatusCallback onStatus, ErrorCallback onError) {
+        try {
+            postStatus(onStatus, "推理后端: " + passtModule.getBackendName());
+        } catch (Exception ex) {
+            postError(
+                    onError,
+                    ex.getLocalizedMessage() != null ? ex.getLocalizedMessage() : ex.toString());
+        }
+    }
+
     private void dispatchInference(
             float[] snapshot,
+            long windowStartMs,
+            long windowEndMs,
             ResultCallback onResult,
             StatusCallback onStatus,
             ErrorCallback onError,
@@ -220,47 +832,282 @@ public class AudioSceneAnalyzer {
             return;
         }
         postStatus(onStatus, "开始推理...");
-        inferenceExecutor.execute(
-                () -> {
-                    long inferStart = SystemClock.elapsedRealtime();
-                    try {
-                        SceneResult result = passtModule.classify(snapshot, snapshot.length);
-                        long duration = SystemClock.elapsedRealtime() - inferStart;
-                        updateNoiseModeFromScene(result);
-                        postResult(onResult, result);
-                        postInferenceTime(onInferenceTime, duration);
-                        postStatus(onStatus, "推理结束，用时 " + duration + " ms");
-                    } catch (Exception ex) {
-                        postError(
-                                onError,
-                                ex.getLocalizedMessage() != null
-                                        ? ex.getLocalizedMessage()
-                                        : ex.toString());
-                    } finally {
-                        inferring.set(false);
-                    }
-                });
+        long queuedNs = PipelineTrace.isEnabled() ? System.nanoTime() : 0L;
+        boolean queued =
+                runOnInference(
+                        () -> {
+                            PipelineTrace.record(
+                                    PipelineTrace.QUEUE, queuedNs, System.nanoTime());
+                            try {
+                                classifyAndPublish(
+                                        snapshot,
+                                        windowStartMs,
+                                        windowEndMs,
+                                        true,
+                                        onResult,
+                                        onStatus,
+                                        onError,
+                                        onInferenceTime);
+                            } finally {
+                                inferring.set(false);
+                            }
+                        });
+        if (!queued) {
+            // released while the loop was winding down
+            inferring.set(false);
+        }
+    }
+
+    /**
+     * Inference thread: classifies one window and fans the result out to the noise mode, timeline,
+     * event capture (if {@code feedTrigger}), uploader and callbacks. Null on failure. The window
+     * bounds are wall-clock times of its first and last sample, used for event timing.
+     */
+    private SceneResult classifyAndPublish(
+            float[] snapshot,
+            long windowStartMs,
+            long windowEndMs,
+            boolean feedTrigger,
+            ResultCallback onResult,
+            StatusCallback onStatus,
+            ErrorCallback onError,
+            InferenceTimeCallback onInferenceTime) {
+        long inferStart = SystemClock.elapsedRealtime();
+        long classifySpan = PipelineTrace.begin(PipelineTrace.CLASSIFY);
+        try {
+            SceneResult result;
+            try {
+                result =
+                        passtModule
+                                .classify(snapshot, snapshot.length)
+                                .withWindow(windowStartMs, windowEndMs);
+            } finally {
+                PipelineTrace.end(PipelineTrace.CLASSIFY, classifySpan);
+            }
+            long duration = SystemClock.elapsedRealtime() - inferStart;
+            updateNoiseModeFromScene(result);
+            recordTimeline(result, onError);
+            events.onResult(result, feedTrigger);
+            ResultUploader uploader = resultUploader;
+            if (uploader != null) {
+                uploader.offer(result);
+            }
+            postResult(onResult, result);
+            postInferenceTime(onInferenceTime, duration);
+            postStatus(onStatus, "推理结束，用时 " + duration + " ms");
+            maybeCalibrateThreads(onStatus);
+            return result;
+        } catch (Exception ex) {
+            postError(
+                    onError,
+                    ex.getLocalizedMessage() != null ? ex.getLocalizedMessage() : ex.toString());
+            return null;
+        }
+    }
+
+    /** Sleeps until {@code deadlineMs}; {@link #stopStreaming} wakes it early. */
+    private void sleepUntil(long deadlineMs, AtomicBoolean active) {
+        synchronized (pauseLock) {
+            long remaining;
+            while (active.get()
+                    && (remaining = deadlineMs - SystemClock.elapsedRealtime()) > 0) {
+                try {
+                    pauseLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Gives one duty cycle the analyzer's source, memory stage, pause state and inference. */
+    private final class DutyHost implements DutyCycleRunner.Host {
+        private final ResultCallback onResult;
+        private final StatusCallback onStatus;
+        private final ErrorCallback onError;
+        private final InferenceTimeCallback onInferenceTime;
+
+        DutyHost(
+                ResultCallback onResult,
+                StatusCallback onStatus,
+                ErrorCallback onError,
+                InferenceTimeCallback onInferenceTime) {
+            this.onResult = onResult;
+            this.onStatus = onStatus;
+            this.onError = onError;
+            this.onInferenceTime = onInferenceTime;
+        }
+
+        @Override
+        public PcmSource openSource() throws IOException {
+            return AudioSceneAnalyzer.this.openSource();
+        }
+
+        @Override
+        public PolyphaseResampler.Quality getResamplerQuality() {
+            return resamplerQuality;
+        }
+
+        @Override
+        public int getMemoryStage() {
+            return memoryStage;
+        }
+
+        @Override
+        public boolean isPaused() {
+            return paused;
+        }
+
+        @Override
+        public void awaitResume(AtomicBoolean active) {
+            AudioSceneAnalyzer.this.awaitResume(active);
+        }
+
+        @Override
+        public void sleepUntil(long deadlineMs, AtomicBoolean active) {
+            AudioSceneAnalyzer.this.sleepUntil(deadlineMs, active);
+        }
+
+        @Override
+        public void loadModel() {
+            runOnInference(() -> loadModelForStreaming(onStatus, onError));
+        }
+
+        @Override
+        public float[] prepareWindow(float[] window, int stage) {
+            return AudioSceneAnalyzer.this.prepareWindow(window, stage, onError);
+        }
+
+        @Override
+        public Future<SceneResult> submitClassify(
+                float[] processed, long windowStartMs, long windowEndMs) {
+            try {
+                return inferenceExecutor.submit(
+                        () ->
+                                classifyAndPublish(
+                                        processed,
+                                        windowStartMs,
+                                        windowEndMs,
+                                        false,
+                                        onResult,
+                                        onStatus,
+                                        onError,
+                                        onInferenceTime));
+            } catch (RejectedExecutionException ex) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean isInferenceShutdown() {
+            return inferenceExecutor.isShutdown();
+        }
+
+        @Override
+        public void onStopped() {
+            flushEventDetector();
+            AudioSceneAnalyzer.this.postStatus(onStatus, "已停止");
+        }
+
+        @Override
+        public void postStatus(String status) {
+            AudioSceneAnalyzer.this.postStatus(onStatus, status);
+        }
+
+        @Override
+        public void postError(String message) {
+            AudioSceneAnalyzer.this.postError(onError, message);
+        }
+    }
+
+    /**
+     * Runs {@link RegressionBenchmark} over the WAV files in {@code corpusDir} on the inference
+     * thread. The report and baseline are written next to the corpus.
+     */
+    public void runBenchmark(
+            File corpusDir,
+            boolean updateBaseline,
+            StatusCallback onStatus,
+            ErrorCallback onError) {
+        runBenchmark(corpusDir, updateBaseline, false, onStatus, onError);
+    }
+
+    /**
+     * As above; with {@code useCache} windows already classified by this model in the same noise
+     * mode are served from the logits cache, e.g. to re-score a corpus after a rule change.
+     */
+    public void runBenchmark(
+            File corpusDir,
+            boolean updateBaseline,
+            boolean useCache,
+            StatusCallback onStatus,
+            ErrorCallback onError) {
+        boolean queued =
+                runOnInference(
+                        () -> {
+                            postStatus(onStatus, "基准测试中...");
+                            RegressionBenchmark benchmark =
+                                    new RegressionBenchmark(
+                                            passtModule,
+                                            SAMPLE_RATE,
+                                            expectedSamples,
+                                            corpusDir,
+                                            RegressionBenchmark.DEFAULT_WINDOW_MS,
+                                            RegressionBenchmark.DEFAULT_HOP_MS,
+                                            updateBaseline,
+                                            useCache);
+                            try {
+                                benchmark.run();
+                                postStatus(
+                                        onStatus,
+                                        "基准测试完成: "
+                                                + benchmark.getReportFile().getAbsolutePath());
+                            } catch (Exception ex) {
+                                benchmark.writeFailure(ex);
+                                postError(
+                                        onError,
+                                        ex.getLocalizedMessage() != null
+                                                ? ex.getLocalizedMessage()
+                                                : ex.toString());
+                            }
+                        });
+        if (!queued) {
+            postError(onError, RELEASED_MESSAGE);
+        }
     }
 
     private void updateNoiseModeFromScene(SceneResult result) {
+        currentNoiseMode = noiseModeFor(result, currentNoiseMode);
+    }
+
+    /** Noise mode the next window should use after {@code result}; {@code current} if unknown. */
+    static NoiseMode noiseModeFor(SceneResult result, NoiseMode current) {
         if (result == null || result.getScene() == null) {
-            return;
+            return current;
+        }
+        String ruleMode = result.getScene().getNoiseMode();
+        if (ruleMode != null) {
+            try {
+                return NoiseMode.valueOf(ruleMode.toUpperCase(Locale.US));
+            } catch (IllegalArgumentException ignored) {
+                // unknown mode name in the rules file; fall back to the scene name
+            }
         }
         String sceneName = result.getScene().getScene();
         if (sceneName == null) {
-            return;
+            return current;
         }
         String normalized = sceneName.toLowerCase(Locale.getDefault());
         if (normalized.contains("会议")) {
-            currentNoiseMode = NoiseMode.MEETING;
+            return NoiseMode.MEETING;
         } else if (normalized.contains("户外")) {
-            currentNoiseMode = NoiseMode.OUTDOOR;
-        } else {
-            currentNoiseMode = NoiseMode.STANDARD;
+            return NoiseMode.OUTDOOR;
         }
+        return NoiseMode.STANDARD;
     }
 
-    private float[] applyNoiseReduction(float[] input, NoiseMode mode) {
+    static float[] applyNoiseReduction(float[] input, NoiseMode mode) {
         if (input == null) {
             return new float[0];
         }
@@ -313,7 +1160,15 @@ public class AudioSceneAnalyzer {
         if (callback == null) {
             return;
         }
-        mainHandler.post(() -> callback.onResult(result));
+        long postedNs = PipelineTrace.isEnabled() ? System.nanoTime() : 0L;
+        mainHandler.post(
+                () -> {
+                    // time spent waiting behind other work on the UI thread
+                    PipelineTrace.record(PipelineTrace.DELIVER_QUEUE, postedNs, System.nanoTime());
+                    long span = PipelineTrace.begin(PipelineTrace.DELIVER);
+                    callback.onResult(result);
+                    PipelineTrace.end(PipelineTrace.DELIVER, span);
+                });
     }
 
     private void postStatus(StatusCallback callback, String status) {
@@ -360,42 +1215,34 @@ public class AudioSceneAnalyzer {
         return SaveResult.success(rawPath, processedPath);
     }
 
+    /** Receives playback failures that happen after {@code play*Buffer} returned. */
+    public void setPlaybackErrorCallback(ErrorCallback onError) {
+        playbackEngine.setErrorListener(
+                onError != null
+                        ? error -> postError(onError, "回放失败: " + error.getLocalizedMessage())
+                        : null);
+    }
+
+    public void stopPlayback() {
+        playbackEngine.stop();
+    }
+
+    public void seekPlayback(long positionMs) {
+        playbackEngine.seek(positionMs);
+    }
+
+    public boolean isPlaying() {
+        return playbackEngine.isPlaying();
+    }
+
     private PlaybackResult playBuffer(float[] snapshot) {
         if (snapshot == null || snapshot.length == 0) {
             return PlaybackResult.failed("empty buffer");
         }
-        short[] pcm = new short[snapshot.length];
-        for (int i = 0; i < snapshot.length; i++) {
-            float v = Math.max(-1f, Math.min(1f, snapshot[i]));
-            pcm[i] = (short) (v * Short.MAX_VALUE);
+        // snapshots are never written after publication, so the engine can read them in place
+        if (!playbackEngine.play(snapshot)) {
+            return PlaybackResult.failed("playback released");
         }
-        int bufferSize = pcm.length * 2;
-        AudioTrack track =
-                new AudioTrack(
-                        AudioManager.STREAM_MUSIC,
-                        SAMPLE_RATE,
-                        AudioFormat.CHANNEL_OUT_MONO,
-                        AudioFormat.ENCODING_PCM_16BIT,
-                        bufferSize,
-                        AudioTrack.MODE_STATIC);
-        track.write(pcm, 0, pcm.length);
-        track.play();
-        new Thread(
-                        () -> {
-                            try {
-                                long durationMs = (long) (pcm.length * 1000L / SAMPLE_RATE) + 200;
-                                Thread.sleep(durationMs);
-                            } catch (InterruptedException ignored) {
-                                Thread.currentThread().interrupt();
-                            } finally {
-                                try {
-                                    track.release();
-                                } catch (Exception ignored) {
-                                }
-                            }
-                        },
-                        "AudioPlayback")
-                .start();
         return PlaybackResult.success();
     }
 
@@ -403,54 +1250,19 @@ public class AudioSceneAnalyzer {
         if (data == null || data.length == 0) {
             return null;
         }
-        File dir =
-                appContext.getExternalFilesDir(Environment.DIRECTORY_MUSIC) != null
-                        ? appContext.getExternalFilesDir(Environment.DIRECTORY_MUSIC)
-                        : appContext.getFilesDir();
         String name = String.format(Locale.getDefault(), "%s_%d.wav", tag, timestamp);
-        File outFile = new File(dir, name);
-        try (FileOutputStream fos = new FileOutputStream(outFile)) {
-            int numSamples = data.length;
-            int byteRate = SAMPLE_RATE * 2;
-            int totalDataLen = numSamples * 2 + 36;
-            // WAV header
-            fos.write(new byte[] {'R', 'I', 'F', 'F'});
-            writeInt(fos, totalDataLen);
-            fos.write(new byte[] {'W', 'A', 'V', 'E'});
-            fos.write(new byte[] {'f', 'm', 't', ' '});
-            writeInt(fos, 16); // PCM header size
-            writeShort(fos, (short) 1); // PCM format
-            writeShort(fos, (short) 1); // mono
-            writeInt(fos, SAMPLE_RATE);
-            writeInt(fos, byteRate);
-            writeShort(fos, (short) 2); // block align
-            writeShort(fos, (short) 16); // bits per sample
-            fos.write(new byte[] {'d', 'a', 't', 'a'});
-            writeInt(fos, numSamples * 2);
-            // data
-            for (float v : data) {
-                float clamped = Math.max(-1f, Math.min(1f, v));
-                short s = (short) (clamped * Short.MAX_VALUE);
-                writeShort(fos, s);
-            }
-            fos.flush();
-            return outFile.getAbsolutePath();
+        File outFile = new File(resolveExportDir(), name);
+        try {
+            WavWriter.writeFile(outFile, archiveFormat, SAMPLE_RATE, data, 0, data.length);
         } catch (IOException e) {
             return null;
         }
+        return outFile.getAbsolutePath();
     }
 
-    private void writeInt(FileOutputStream fos, int value) throws IOException {
-        fos.write(new byte[] {
-            (byte) (value & 0xff),
-            (byte) ((value >> 8) & 0xff),
-            (byte) ((value >> 16) & 0xff),
-            (byte) ((value >> 24) & 0xff)
-        });
-    }
-
-    private void writeShort(FileOutputStream fos, short value) throws IOException {
-        fos.write(new byte[] {(byte) (value & 0xff), (byte) ((value >> 8) & 0xff)});
+    private File resolveExportDir() {
+        File music = appContext.getExternalFilesDir(Environment.DIRECTORY_MUSIC);
+        return music != null ? music : appContext.getFilesDir();
     }
 
     public static class PlaybackResult {
@@ -471,6 +1283,106 @@ public class AudioSceneAnalyzer {
         }
     }
 
+    /** Byte counts from {@link #getMemoryReport}. */
+    public static class MemoryReport {
+        public final int stage;
+        public final long ringBytes;
+        public final long snapshotBytes;
+        public final long triggerBytes;
+        public final long cacheBytes;
+        public final long modelBytesEstimate;
+        public final long javaHeapUsedBytes;
+        public final long nativeHeapBytes;
+
+        MemoryReport(
+                int stage,
+                long ringBytes,
+                long snapshotBytes,
+                long triggerBytes,
+                long cacheBytes,
+                long modelBytesEstimate,
+                long javaHeapUsedBytes,
+                long nativeHeapBytes) {
+            this.stage = stage;
+            this.ringBytes = ringBytes;
+            this.snapshotBytes = snapshotBytes;
+            this.triggerBytes = triggerBytes;
+            this.cacheBytes = cacheBytes;
+            this.modelBytesEstimate = modelBytesEstimate;
+            this.javaHeapUsedBytes = javaHeapUsedBytes;
+            this.nativeHeapBytes = nativeHeapBytes;
+        }
+
+        /** Buffers and caches owned by the analyzer, excluding the model. */
+        public long bufferBytes() {
+            return ringBytes + snapshotBytes + triggerBytes + cacheBytes;
+        }
+
+        public String describe() {
+            return String.format(
+                    Locale.US,
+                    "内存级别 %d | 缓冲 %.1f MB (环形 %.1f, 快照 %.1f, 事件 %.1f, 缓存 %.1f)"
+                            + " | 模型≈%.0f MB | Java 堆 %.1f MB | 原生堆 %.1f MB",
+                    stage,
+                    mb(bufferBytes()),
+                    mb(ringBytes),
+                    mb(snapshotBytes),
+                    mb(triggerBytes),
+                    mb(cacheBytes),
+                    mb(modelBytesEstimate),
+                    mb(javaHeapUsedBytes),
+                    mb(nativeHeapBytes));
+        }
+
+        private static double mb(long bytes) {
+            return bytes / (1024.0 * 1024.0);
+        }
+    }
+
+    /** A sound event from {@link #enableEventDetection}; delivered at onset and again at offset. */
+    public static class SoundEvent {
+        /** {@link #offsetMs} of an event that has started but not yet ended. */
+        public static final long OPEN = -1L;
+
+        public final int labelIndex;
+        public final String label;
+        public final long onsetMs;
+        public final long offsetMs;
+        /** Confidence of the onset window, or the event's peak once it has ended. */
+        public final float confidence;
+
+        SoundEvent(int labelIndex, String label, long onsetMs, long offsetMs, float confidence) {
+            this.labelIndex = labelIndex;
+            this.label = label;
+            this.onsetMs = onsetMs;
+            this.offsetMs = offsetMs;
+            this.confidence = confidence;
+        }
+
+        public boolean isOpen() {
+            return offsetMs == OPEN;
+        }
+
+        public String describe() {
+            SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss", Locale.US);
+            if (isOpen()) {
+                return String.format(
+                        Locale.US,
+                        "%s 开始于 %s (%.2f)",
+                        label,
+                        time.format(new Date(onsetMs)),
+                        confidence);
+            }
+            return String.format(
+                    Locale.US,
+                    "%s %s–%s (峰值 %.2f)",
+                    label,
+                    time.format(new Date(onsetMs)),
+                    time.format(new Date(offsetMs)),
+                    confidence);
+        }
+    }
+
     public static class SaveResult {
         public final boolean success;
         public final String rawPath;
@@ -505,11 +1417,19 @@ public class AudioSceneAnalyzer {
         void onError(String message);
     }
 
+    public interface ClipCallback {
+        void onClip(String path, String reason);
+    }
+
+    public interface SoundEventCallback {
+        void onEvent(SoundEvent event);
+    }
+
     public interface InferenceTimeCallback {
         void onInferenceTime(long durationMs);
     }
 
-    private enum NoiseMode {
+    enum NoiseMode {
         STANDARD,
         MEETING,
         OUTDOOR
@@ -0,0 +1,127 @@
+package com.example.passtapp;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Slot schedule and bookkeeping for duty-cycled capture: the microphone is open for one window
+ * per slot and closed in between. With adaptive lengthening the period doubles, up to
+ * {@code maxPeriodMs}, each time the scene stays the same for {@code stableSlots} slots in a row,
+ * and drops back to the base period on the first change.
+ *
+ * <p>The duty-cycle loop updates it; other threads read through {@link #snapshot}.
+ *
+ * <p>Slots are timed on the monotonic clock by a waiting thread, and no wake lock is held while
+ * the microphone is closed. If the CPU suspends between slots the wait stops with it, so slots
+ * slip by the time spent suspended; a strict schedule would need an {@code AlarmManager} alarm
+ * or a partial wake lock, which costs the battery this mode exists to save.
+ */
+final class DutyCycle {
+
+    /** A slot must fit one 10 s window, the AGC settle and a forward before the next opens. */
+    static final long MIN_PERIOD_MS = 12_000L;
+
+    /** Slot spacing; {@code periodMs} is measured from one mic open to the next. */
+    static final class Config {
+        final long periodMs;
+        final long maxPeriodMs;
+        final int stableSlots;
+
+        Config(long periodMs, long maxPeriodMs, int stableSlots) {
+            this.periodMs = Math.max(MIN_PERIOD_MS, periodMs);
+            this.maxPeriodMs = Math.max(this.periodMs, maxPeriodMs);
+            this.stableSlots = Math.max(1, stableSlots);
+        }
+
+        /** Fixed period, no lengthening. */
+        static Config fixed(long periodMs) {
+            return new Config(periodMs, periodMs, 1);
+        }
+
+        /** Doubles after 3 unchanged slots, up to 8x the base period. */
+        static Config adaptive(long periodMs) {
+            return new Config(periodMs, periodMs * 8, 3);
+        }
+
+        boolean isAdaptive() {
+            return maxPeriodMs > periodMs;
+        }
+    }
+
+    /** Counters since the duty cycle started. */
+    static final class Stats {
+        final int slots;
+        final long micOnMs;
+        final long elapsedMs;
+        final long periodMs;
+
+        Stats(int slots, long micOnMs, long elapsedMs, long periodMs) {
+            this.slots = slots;
+            this.micOnMs = micOnMs;
+            this.elapsedMs = elapsedMs;
+            this.periodMs = periodMs;
+        }
+
+        /** Fraction of wall time the microphone was open. */
+        double dutyRatio() {
+            return elapsedMs > 0 ? (double) micOnMs / elapsedMs : 0;
+        }
+
+        String describe() {
+            return String.format(
+                    Locale.US,
+                    "占空比 %.1f%% | 麦克风开启 %.1f s / %.1f s | 第 %d 轮 | 周期 %d s",
+                    dutyRatio() * 100,
+                    micOnMs / 1000.0,
+                    elapsedMs / 1000.0,
+                    slots,
+                    periodMs / 1000);
+        }
+    }
+
+    private final Config config;
+    private final long startedMs;
+    private long periodMs;
+    private String lastScene;
+    private int unchanged;
+    private int slots;
+    private long micOnMs;
+
+    DutyCycle(Config config, long nowMs) {
+        this.config = config;
+        this.startedMs = nowMs;
+        this.periodMs = config.periodMs;
+    }
+
+    synchronized long getPeriodMs() {
+        return periodMs;
+    }
+
+    /** Books one slot's mic-open time. */
+    synchronized void onCapture(long micMs) {
+        slots++;
+        micOnMs += micMs;
+    }
+
+    /** Updates the period from the slot's scene; {@code null} (no result) leaves it unchanged. */
+    synchronized void onScene(String scene) {
+        if (scene == null) {
+            return;
+        }
+        if (!Objects.equals(scene, lastScene)) {
+            lastScene = scene;
+            unchanged = 0;
+            periodMs = config.periodMs;
+            return;
+        }
+        unchanged++;
+        if (unchanged >= config.stableSlots && periodMs < config.maxPeriodMs) {
+            periodMs = Math.min(config.maxPeriodMs, periodMs * 2);
+            unchanged = 0;
+        }
+    }
+
+    synchronized Stats snapshot(long nowMs) {
+        return new Stats(slots, micOnMs, nowMs - startedMs, periodMs);
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.passtapp;
+
+import android.os.SystemClock;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The duty-cycled capture loop: once per slot the source is opened, one window is captured after
+ * a short settle, the source is closed again (releasing the microphone) and the window is
+ * classified. The loop then sleeps until the next slot of its {@link DutyCycle}.
+ *
+ * <p>Everything else — the source, memory stage, pause state, denoising and the inference thread —
+ * belongs to the analyzer and is reached through {@link Host}. One runner serves one start.
+ */
+final class DutyCycleRunner {
+
+    /** Audio dropped after each mic open while AGC and the resampler settle. */
+    static final long SETTLE_MS = 200L;
+    /** How often a slot waiting on its forward re-checks the stop flag. */
+    static final long POLL_MS = 500L;
+
+    /** The analyzer state and threads a duty cycle runs on. */
+    interface Host {
+        PcmSource openSource() throws IOException;
+
+        PolyphaseResampler.Quality getResamplerQuality();
+
+        int getMemoryStage();
+
+        boolean isPaused();
+
+        /** Blocks while paused and {@code active}. */
+        void awaitResume(AtomicBoolean active);
+
+        /** Blocks until {@code deadlineMs} on the monotonic clock, or until stopped. */
+        void sleepUntil(long deadlineMs, AtomicBoolean active);
+
+        /** Queues the model load on the inference thread. */
+        void loadModel();
+
+        /**
+         * Retains {@code window} for playback per {@code stage} and returns its denoised copy;
+         * null, after reporting it, if the window is too quiet to classify.
+         */
+        float[] prepareWindow(float[] window, int stage);
+
+        /** Classifies and publishes on the inference thread; null once that has shut down. */
+        Future<SceneResult> submitClassify(
+                float[] processed, long windowStartMs, long windowEndMs);
+
+        boolean isInferenceShutdown();
+
+        /** Called once the loop has ended, after {@code active} was cleared. */
+        void onStopped();
+
+        void postStatus(String status);
+
+        void postError(String message);
+    }
+
+    private final DutyCycle.Config config;
+    private final int sampleRate;
+    private final int chunkSize;
+    private final int expectedSamples;
+    private final Host host;
+    private volatile DutyCycle cycle;
+
+    DutyCycleRunner(
+            DutyCycle.Config config, int sampleRate, int chunkSize, int expectedSamples, Host host) {
+        this.config = config;
+        this.sampleRate = sampleRate;
+        this.chunkSize = chunkSize;
+        this.expectedSamples = expectedSamples;
+        this.host = host;
+    }
+
+    /** Duty ratio and mic-on time so far; null until {@link #run} has started. */
+    DutyCycle.Stats getStats() {
+        DutyCycle current = cycle;
+        return current != null ? current.snapshot(SystemClock.elapsedRealtime()) : null;
+    }
+
+    /** Runs slots until {@code active} is cleared or the source ends; clears it on exit. */
+    void run(AtomicBoolean active) {
+        DutyCycle current = new DutyCycle(config, SystemClock.elapsedRealtime());
+        cycle = current;
+        InferenceTuner.applyCapturePriority();
+        try {
+            host.postStatus(
+                    config.isAdaptive()
+                            ? "间歇收音: 每 " + config.periodMs / 1000 + " s，场景稳定时延长至 "
+                                    + config.maxPeriodMs / 1000 + " s"
+                            : "间歇收音: 每 " + config.periodMs / 1000 + " s");
+            host.loadModel();
+            while (active.get() && !Thread.currentThread().isInterrupted()) {
+                if (host.isPaused()) {
+                    host.postStatus("已暂停");
+                    host.awaitResume(active);
+                    continue;
+                }
+                long slotStart = SystemClock.elapsedRealtime();
+                int stage = host.getMemoryStage();
+                if (stage >= AudioSceneAnalyzer.MEMORY_MODEL_UNLOADED) {
+                    // nothing could classify the window, so leave the microphone closed
+                    host.postStatus("内存不足，跳过本轮收音");
+                } else {
+                    int windowLength =
+                            stage >= AudioSceneAnalyzer.MEMORY_SHORT_WINDOW
+                                    ? expectedSamples / 2
+                                    : expectedSamples;
+                    float[] window = captureSlot(windowLength, current, active);
+                    long windowEndMs = System.currentTimeMillis();
+                    if (window == null) {
+                        if (active.get()) {
+                            host.postStatus("音源结束");
+                        }
+                        break;
+                    }
+                    SceneResult result =
+                            classifySlot(
+                                    active,
+                                    window,
+                                    windowEndMs - windowLength * 1000L / sampleRate,
+                                    windowEndMs,
+                                    stage);
+                    current.onScene(
+                            result != null && result.getScene() != null
+                                    ? result.getScene().getScene()
+                                    : null);
+                    host.postStatus(current.snapshot(SystemClock.elapsedRealtime()).describe());
+                }
+                host.sleepUntil(slotStart + current.getPeriodMs(), active);
+            }
+        } catch (Exception ex) {
+            host.postError(
+                    ex.getLocalizedMessage() != null ? ex.getLocalizedMessage() : ex.toString());
+        } finally {
+            active.set(false);
+            host.onStopped();
+        }
+    }
+
+    /**
+     * Opens the source, fills one window and closes it again; the open time is booked on {@code
+     * cycle}. Null if the source ended or the loop was stopped before the window was full.
+     */
+    private float[] captureSlot(int windowLength, DutyCycle cycle, AtomicBoolean active)
+            throws IOException {
+        float[] window = new float[windowLength];
+        int filled = 0;
+        long openedMs = SystemClock.elapsedRealtime();
+        try (PcmSource source = host.openSource()) {
+            PolyphaseResampler resampler =
+                    new PolyphaseResampler(
+                            source.getSampleRate(), sampleRate, host.getResamplerQuality());
+            float[] nativeChunk = new float[chunkSize];
+            float[] resampled = new float[resampler.maxOutput(chunkSize)];
+            int settle = (int) (sampleRate * SETTLE_MS / 1000);
+            source.start();
+            while (filled < windowLength && active.get()) {
+                int read;
+                long readSpan = PipelineTrace.begin(PipelineTrace.READ);
+                try {
+                    read = source.read(nativeChunk, 0, nativeChunk.length);
+                } finally {
+                    PipelineTrace.end(PipelineTrace.READ, readSpan);
+                }
+                if (read == PcmSource.END_OF_STREAM) {
+                    break;
+                }
+                int produced = resampler.process(nativeChunk, 0, read, resampled, 0);
+                int skip = Math.min(produced, settle);
+                settle -= skip;
+                int copy = Math.min(produced - skip, windowLength - filled);
+                System.arraycopy(resampled, skip, window, filled, copy);
+                filled += copy;
+            }
+        } finally {
+            cycle.onCapture(SystemClock.elapsedRealtime() - openedMs);
+        }
+        return filled == windowLength ? window : null;
+    }
+
+    /**
+     * Denoises and classifies one window, waiting for the inference thread. Null when the window
+     * is silent, or when the loop is stopped or the analyzer released before the forward
+     * finished; a forward not yet started is then cancelled.
+     */
+    private SceneResult classifySlot(
+            AtomicBoolean active, float[] window, long windowStartMs, long windowEndMs, int stage)
+            throws InterruptedException, ExecutionException {
+        float[] processed = host.prepareWindow(window, stage);
+        if (processed == null) {
+            return null;
+        }
+        host.postStatus("开始推理...");
+        Future<SceneResult> future = host.submitClassify(processed, windowStartMs, windowEndMs);
+        if (future == null) {
+            return null;
+        }
+        // a task still queued at shutdownNow() never completes, so never wait unbounded
+        while (true) {
+            try {
+                return future.get(POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+                if (!active.get() || host.isInferenceShutdown()) {
+                    future.cancel(false);
+                    return null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.passtapp;
+
+import java.util.Arrays;
+
+/**
+ * Turns the stream of per-window probability vectors into sound events with onset and offset
+ * times, for every label at once. Each label runs a two-threshold hysteresis: it turns on when its
+ * probability reaches the on threshold and off only after {@code holdWindows} consecutive windows
+ * below the off threshold, so a label hovering around one threshold does not chatter.
+ *
+ * <p>All per-label state lives in flat arrays sized on the first result; {@link #onResult} is one
+ * pass over the labels and allocates nothing unless an event starts or ends.
+ *
+ * <p>Times come from the wall-clock bounds of each result's audio window ({@link
+ * SceneResult#getWindowEndMs}), not from when inference finished. Onset is the end of the first
+ * window at or above the on threshold, the earliest moment the sound is known to be present;
+ * offset is the start of the first window of the closing below-threshold run, never before the
+ * onset. The model cannot place a sound within its window, so both edges are only accurate to
+ * about one window (10 s, 5 s under memory pressure): onsets tend to be late and offsets early.
+ */
+final class EventDetector {
+
+    /** Thresholds shared by all labels, with optional per-label overrides. */
+    static final class Config {
+        final float onThreshold;
+        final float offThreshold;
+        final int holdWindows;
+        int[] labelIndices = new int[0];
+        float[] onThresholds = new float[0];
+        float[] offThresholds = new float[0];
+
+        Config(float onThreshold, float offThreshold, int holdWindows) {
+            this.onThreshold = onThreshold;
+            this.offThreshold = Math.min(offThreshold, onThreshold);
+            this.holdWindows = Math.max(1, holdWindows);
+        }
+
+        static Config defaults() {
+            return new Config(0.5f, 0.3f, 2);
+        }
+
+        Config setLabel(int labelIndex, float onThreshold, float offThreshold) {
+            int n = labelIndices.length;
+            labelIndices = Arrays.copyOf(labelIndices, n + 1);
+            onThresholds = Arrays.copyOf(onThresholds, n + 1);
+            offThresholds = Arrays.copyOf(offThresholds, n + 1);
+            labelIndices[n] = labelIndex;
+            onThresholds[n] = onThreshold;
+            offThresholds[n] = Math.min(offThreshold, onThreshold);
+            return this;
+        }
+    }
+
+    interface Listener {
+        /** {@code confidence} is the probability of the window that opened the event. */
+        void onOnset(int labelIndex, long onsetMs, float confidence);
+
+        void onOffset(int labelIndex, long onsetMs, long offsetMs, float peakConfidence);
+    }
+
+    private final Config config;
+    private final Listener listener;
+    private float[] on;
+    private float[] off;
+    private boolean[] active;
+    private long[] onsetMs;
+    private long[] offsetMs;
+    private long lastWindowEndMs;
+    private float[] peak;
+    private int[] below;
+    private int activeCount;
+
+    EventDetector(Config config, Listener listener) {
+        this.config = config;
+        this.listener = listener;
+    }
+
+    /** Inference thread: advances every label by one window. */
+    synchronized void onResult(SceneResult result) {
+        if (result == null || result.getProbabilities() == null) {
+            return;
+        }
+        float[] probs = result.getProbabilities();
+        long startMs = result.getWindowStartMs();
+        long endMs = result.getWindowEndMs();
+        lastWindowEndMs = endMs;
+        ensureCapacity(probs.length);
+        int n = Math.min(probs.length, active.length);
+        for (int i = 0; i < n; i++) {
+            float p = probs[i];
+            if (!active[i]) {
+                if (p >= on[i]) {
+                    active[i] = true;
+                    activeCount++;
+                    onsetMs[i] = endMs;
+                    peak[i] = p;
+                    below[i] = 0;
+                    listener.onOnset(i, endMs, p);
+                }
+                continue;
+            }
+            if (p > off[i]) {
+                below[i] = 0;
+                if (p > peak[i]) {
+                    peak[i] = p;
+                }
+                continue;
+            }
+            if (below[i]++ == 0) {
+                offsetMs[i] = Math.max(onsetMs[i], startMs);
+            }
+            if (below[i] >= config.holdWindows) {
+                close(i);
+            }
+        }
+    }
+
+    /**
+     * Ends every open event, e.g. when capture stops: at the start of its below-threshold run if
+     * one had begun, otherwise at the end of the last window.
+     */
+    synchronized void flush() {
+        if (active == null || activeCount == 0) {
+            return;
+        }
+        for (int i = 0; i < active.length; i++) {
+            if (active[i]) {
+                if (below[i] == 0) {
+                    offsetMs[i] = Math.max(onsetMs[i], lastWindowEndMs);
+                }
+                close(i);
+            }
+        }
+    }
+
+    synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    private void close(int i) {
+        active[i] = false;
+        activeCount--;
+        listener.onOffset(i, onsetMs[i], offsetMs[i], peak[i]);
+    }
+
+    private void ensureCapacity(int labels) {
+        if (active != null && active.length >= labels) {
+            return;
+        }
+        on = new float[labels];
+        off = new float[labels];
+        Arrays.fill(on, config.onThreshold);
+        Arrays.fill(off, config.offThreshold);
+        for (int k = 0; k < config.labelIndices.length; k++) {
+            int idx = config.labelIndices[k];
+            if (idx >= 0 && idx < labels) {
+                on[idx] = config.onThresholds[k];
+                off[idx] = config.offThresholds[k];
+            }
+        }
+        active = new boolean[labels];
+        onsetMs = new long[labels];
+        offsetMs = new long[labels];
+        peak = new float[labels];
+        below = new int[labels];
+        activeCount = 0;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.passtapp;
+
+import android.os.Handler;
+import java.io.File;
+
+/**
+ * Event side of the analyzer: the optional {@link TriggerRecorder} that saves pre-/post-roll
+ * clips and the optional {@link EventDetector} that reports per-label onsets and offsets. Both
+ * are off until enabled and can be swapped while capture runs; the capture thread feeds audio
+ * through {@link #onAudio} and the inference thread feeds results through {@link #onResult}.
+ * Callbacks are delivered on the main thread.
+ */
+final class EventPipeline {
+
+    private final int sampleRate;
+    private final File clipDir;
+    private final TriggerRecorder.LabelNames labelNames;
+    private final Handler mainHandler;
+
+    private volatile WavWriter.Format format = WavWriter.Format.PCM16;
+    private volatile TriggerRecorder triggerRecorder;
+    private volatile EventDetector eventDetector;
+
+    EventPipeline(
+            int sampleRate,
+            File clipDir,
+            TriggerRecorder.LabelNames labelNames,
+            Handler mainHandler) {
+        this.sampleRate = sampleRate;
+        this.clipDir = clipDir;
+        this.labelNames = labelNames;
+        this.mainHandler = mainHandler;
+    }
+
+    /** Encoding of saved clips; applies to the current recorder and any enabled later. */
+    void setFormat(WavWriter.Format format) {
+        this.format = format;
+        TriggerRecorder trigger = triggerRecorder;
+        if (trigger != null) {
+            trigger.setFormat(format);
+        }
+    }
+
+    /** Saves clips to the clip dir whenever {@code config} fires; replaces any previous one. */
+    synchronized void enableCapture(
+            TriggerRecorder.Config config,
+            AudioSceneAnalyzer.ClipCallback onClip,
+            AudioSceneAnalyzer.ErrorCallback onError) {
+        disableCapture();
+        TriggerRecorder trigger =
+                new TriggerRecorder(
+                        sampleRate,
+                        clipDir,
+                        config,
+                        labelNames,
+                        new TriggerRecorder.ClipListener() {
+                            @Override
+                            public void onClipSaved(File file, String reason) {
+                                if (onClip != null) {
+                                    mainHandler.post(
+                                            () -> onClip.onClip(file.getAbsolutePath(), reason));
+                                }
+                            }
+
+                            @Override
+                            public void onClipFailed(String reason, Exception error) {
+                                if (onError != null) {
+                                    String message =
+                                            "事件片段保存失败: " + error.getLocalizedMessage();
+                                    mainHandler.post(() -> onError.onError(message));
+                                }
+                            }
+                        });
+        trigger.setFormat(format);
+        triggerRecorder = trigger;
+    }
+
+    synchronized void disableCapture() {
+        TriggerRecorder trigger = triggerRecorder;
+        triggerRecorder = null;
+        if (trigger != null) {
+            trigger.release();
+        }
+    }
+
+    /** Reports events for all labels; replaces any previous detector, closing its open events. */
+    synchronized void enableDetection(
+            EventDetector.Config config, AudioSceneAnalyzer.SoundEventCallback onEvent) {
+        disableDetection();
+        eventDetector =
+                new EventDetector(
+                        config,
+                        new EventDetector.Listener() {
+                            @Override
+                            public void onOnset(int labelIndex, long onsetMs, float confidence) {
+                                post(
+                                        onEvent,
+                                        new AudioSceneAnalyzer.SoundEvent(
+                                                labelIndex,
+                                                labelNames.nameOf(labelIndex),
+                                                onsetMs,
+                                                AudioSceneAnalyzer.SoundEvent.OPEN,
+                                                confidence));
+                            }
+
+                            @Override
+                            public void onOffset(
+                                    int labelIndex, long onsetMs, long offsetMs, float peak) {
+                                post(
+                                        onEvent,
+                                        new AudioSceneAnalyzer.SoundEvent(
+                                                labelIndex,
+                                                labelNames.nameOf(labelIndex),
+                                                onsetMs,
+                                                offsetMs,
+                                                peak));
+                            }
+                        });
+    }
+
+    synchronized void disableDetection() {
+        EventDetector detector = eventDetector;
+        eventDetector = null;
+        if (detector != null) {
+            detector.flush();
+        }
+    }
+
+    /** Capture thread: resampled audio for the recorder's pre-roll ring. */
+    void onAudio(float[] samples, int offset, int length) {
+        TriggerRecorder trigger = triggerRecorder;
+        if (trigger != null) {
+            trigger.onAudio(samples, offset, length);
+        }
+    }
+
+    /**
+     * Inference thread: one classified window. The recorder only sees it with {@code feedTrigger},
+     * since its clips assume the continuous audio that {@link #onAudio} provides.
+     */
+    void onResult(SceneResult result, boolean feedTrigger) {
+        TriggerRecorder trigger = triggerRecorder;
+        if (feedTrigger && trigger != null) {
+            trigger.onResult(result);
+        }
+        EventDetector detector = eventDetector;
+        if (detector != null) {
+            detector.onResult(result);
+        }
+    }
+
+    /**
+     * The current detector's flush, for closing open events once capture ends; null while
+     * detection is off.
+     */
+    Runnable detectorFlush() {
+        EventDetector detector = eventDetector;
+        return detector != null ? detector::flush : null;
+    }
+
+    long getBufferBytes() {
+        TriggerRecorder trigger = triggerRecorder;
+        return trigger != null ? trigger.getBufferBytes() : 0;
+    }
+
+    void release() {
+        disableCapture();
+        disableDetection();
+    }
+
+    private void post(
+            AudioSceneAnalyzer.SoundEventCallback callback, AudioSceneAnalyzer.SoundEvent event) {
+        if (callback == null) {
+            return;
+        }
+        mainHandler.post(() -> callback.onEvent(event));
+    }
+}
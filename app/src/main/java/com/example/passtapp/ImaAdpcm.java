@@ -0,0 +1,118 @@
+package com.example.passtapp;
+
+/**
+ * IMA/DVI ADPCM block codec in the Microsoft WAV layout (format tag 0x11, mono). Each block is a
+ * 4-byte header (first sample, step index) followed by 4-bit codes, low nibble first, giving a
+ * 4:1 reduction over PCM16.
+ */
+final class ImaAdpcm {
+
+    static final int FORMAT_TAG = 0x11;
+
+    private static final int[] STEP_TABLE = {
+        7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45, 50, 55, 60,
+        66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307, 337, 371,
+        408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878,
+        2066, 2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845,
+        8630, 9493, 10442, 11487, 12635, 13899, 15289, 16818, 18500, 20350, 22385, 24623, 27086,
+        29794, 32767
+    };
+
+    private static final int[] INDEX_TABLE = {-1, -1, -1, -1, 2, 4, 6, 8};
+
+    private ImaAdpcm() {}
+
+    static int samplesPerBlock(int blockAlign) {
+        return (blockAlign - 4) * 2 + 1;
+    }
+
+    /**
+     * Encodes exactly {@link #samplesPerBlock} samples from {@code pcm} into {@code out}.
+     * {@code state[0]} carries the step index from block to block.
+     */
+    static void encodeBlock(short[] pcm, int offset, byte[] out, int blockAlign, int[] state) {
+        int predictor = pcm[offset];
+        int index = state[0];
+        out[0] = (byte) predictor;
+        out[1] = (byte) (predictor >> 8);
+        out[2] = (byte) index;
+        out[3] = 0;
+        int samples = samplesPerBlock(blockAlign);
+        int outPos = 4;
+        for (int i = 1; i < samples; i += 2) {
+            int lo = encodeSample(pcm[offset + i], predictor, index);
+            predictor = lo >> 8;
+            index = clampIndex(index + INDEX_TABLE[lo & 7]);
+            int hi = encodeSample(pcm[offset + i + 1], predictor, index);
+            predictor = hi >> 8;
+            index = clampIndex(index + INDEX_TABLE[hi & 7]);
+            out[outPos++] = (byte) ((lo & 0x0f) | (hi & 0x0f) << 4);
+        }
+        state[0] = index;
+    }
+
+    /** Decodes one block into {@code pcm}; returns the number of samples produced. */
+    static int decodeBlock(byte[] in, int blockAlign, short[] pcm, int offset) {
+        int predictor = (short) ((in[0] & 0xff) | in[1] << 8);
+        int index = clampIndex(in[2] & 0xff);
+        pcm[offset] = (short) predictor;
+        int produced = 1;
+        for (int i = 4; i < blockAlign; i++) {
+            int b = in[i] & 0xff;
+            for (int shift = 0; shift <= 4; shift += 4) {
+                int code = (b >> shift) & 0x0f;
+                predictor = clamp16(predictor + delta(code, STEP_TABLE[index]));
+                index = clampIndex(index + INDEX_TABLE[code & 7]);
+                pcm[offset + produced++] = (short) predictor;
+            }
+        }
+        return produced;
+    }
+
+    /** Returns {@code newPredictor << 8 | code}. */
+    private static int encodeSample(int sample, int predictor, int index) {
+        int step = STEP_TABLE[index];
+        int diff = sample - predictor;
+        int code = 0;
+        if (diff < 0) {
+            code = 8;
+            diff = -diff;
+        }
+        if (diff >= step) {
+            code |= 4;
+            diff -= step;
+        }
+        if (diff >= step >> 1) {
+            code |= 2;
+            diff -= step >> 1;
+        }
+        if (diff >= step >> 2) {
+            code |= 1;
+        }
+        // reconstruct exactly as the decoder will so encoder and decoder never drift apart
+        int next = clamp16(predictor + delta(code, step));
+        return next << 8 | code;
+    }
+
+    private static int delta(int code, int step) {
+        int diff = step >> 3;
+        if ((code & 4) != 0) {
+            diff += step;
+        }
+        if ((code & 2) != 0) {
+            diff += step >> 1;
+        }
+        if ((code & 1) != 0) {
+            diff += step >> 2;
+        }
+        return (code & 8) != 0 ? -diff : diff;
+    }
+
+    private static int clampIndex(int index) {
+        return index < 0 ? 0 : Math.min(index, STEP_TABLE.length - 1);
+    }
+
+    private static int clamp16(int value) {
+        return value < Short.MIN_VALUE ? Short.MIN_VALUE : Math.min(value, Short.MAX_VALUE);
+    }
+}
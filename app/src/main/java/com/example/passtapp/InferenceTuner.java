@@ -0,0 +1,195 @@
+package com.example.passtapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Process;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TreeSet;
+import org.pytorch.IValue;
+import org.pytorch.Module;
+import org.pytorch.PyTorchAndroid;
+import org.pytorch.Tensor;
+
+/**
+ * Picks the PyTorch intra-op thread count by timing the real forward at a few candidate counts,
+ * and remembers the winner per device model and model hash. Also holds the thread priority policy
+ * for the capture and inference threads.
+ *
+ * <p>Java cannot pin threads to cores, so big.LITTLE placement is approximated: candidates are
+ * capped near the number of fastest cores and the inference thread runs just below the UI thread.
+ * Only the calling thread's priority is set; PyTorch's intra-op worker threads are not touched.
+ *
+ * <p>Calibration costs up to five candidates times four forwards, so model load only applies a
+ * stored or default count ({@link #applyStored}) and the caller runs {@link #tune} later, once the
+ * first result is out.
+ */
+final class InferenceTuner {
+
+    private static final String PREFS = "passt_tuning";
+    private static final int WARMUP_RUNS = 1;
+    private static final int TIMED_RUNS = 3;
+
+    private final SharedPreferences prefs;
+
+    InferenceTuner(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    /** Capture must never starve: audio-class priority, same as the platform's record threads. */
+    static void applyCapturePriority() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+    }
+
+    /** Inference yields to the UI thread so a long forward never drops frames. */
+    static void applyInferencePriority() {
+        Process.setThreadPriority(
+                Process.THREAD_PRIORITY_DEFAULT + Process.THREAD_PRIORITY_LESS_FAVORABLE);
+    }
+
+    /**
+     * Applies the stored thread count for {@code modelFile}, or the fast-core count (at most 4)
+     * when none is stored yet, and returns it. Never runs the model.
+     */
+    int applyStored(File modelFile) {
+        int threads = prefs.getInt(threadsKey(modelFile), 0);
+        if (threads <= 0) {
+            threads = Math.max(1, Math.min(4, fastCoreCount()));
+        }
+        PyTorchAndroid.setNumThreads(threads);
+        return threads;
+    }
+
+    /** Whether a calibrated count for {@code modelFile} is stored. */
+    boolean hasStored(File modelFile) {
+        return prefs.getInt(threadsKey(modelFile), 0) > 0;
+    }
+
+    /**
+     * Returns the tuned thread count for {@code modelFile}, calibrating with {@code module} on a
+     * cache miss, and applies it. Must run on the inference thread.
+     */
+    int tune(Module module, File modelFile, int inputSamples, boolean force) {
+        String key = threadsKey(modelFile);
+        int threads = force ? 0 : prefs.getInt(key, 0);
+        if (threads <= 0) {
+            threads = calibrate(module, inputSamples);
+            prefs.edit().putInt(key, threads).apply();
+        }
+        PyTorchAndroid.setNumThreads(threads);
+        return threads;
+    }
+
+    private String threadsKey(File modelFile) {
+        return "threads|" + Build.MODEL + "|" + modelHash(modelFile);
+    }
+
+    private int calibrate(Module module, int inputSamples) {
+        float[] input = new float[inputSamples];
+        Tensor tensor = Tensor.fromBlob(input, new long[] {1, inputSamples});
+        int best = 1;
+        long bestNs = Long.MAX_VALUE;
+        for (int threads : candidateThreadCounts()) {
+            PyTorchAndroid.setNumThreads(threads);
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                module.forward(IValue.from(tensor));
+            }
+            long[] runs = new long[TIMED_RUNS];
+            for (int i = 0; i < TIMED_RUNS; i++) {
+                long start = System.nanoTime();
+                module.forward(IValue.from(tensor));
+                runs[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(runs);
+            long median = runs[TIMED_RUNS / 2];
+            // prefer fewer threads unless more are clearly (>5%) faster
+            if (median < bestNs * 0.95) {
+                bestNs = median;
+                best = threads;
+            }
+        }
+        return best;
+    }
+
+    static int[] candidateThreadCounts() {
+        int cpus = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int big = Math.max(1, fastCoreCount());
+        TreeSet<Integer> set = new TreeSet<>();
+        set.add(1);
+        set.add(Math.min(2, cpus));
+        set.add(big);
+        set.add(Math.min(cpus, big + 2));
+        set.add(Math.min(4, cpus));
+        int[] out = new int[set.size()];
+        int i = 0;
+        for (int n : set) {
+            out[i++] = n;
+        }
+        return out;
+    }
+
+    /** Number of cores sharing the highest max frequency, or all cores if sysfs is unreadable. */
+    static int fastCoreCount() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        long top = -1;
+        int count = 0;
+        for (int cpu = 0; cpu < cpus; cpu++) {
+            File f =
+                    new File(
+                            String.format(
+                                    Locale.US,
+                                    "/sys/devices/system/cpu/cpu%d/cpufreq/cpuinfo_max_freq",
+                                    cpu));
+            long freq;
+            try (BufferedReader reader = new BufferedReader(new FileReader(f))) {
+                freq = Long.parseLong(reader.readLine().trim());
+            } catch (IOException | RuntimeException ex) {
+                return cpus;
+            }
+            if (freq > top) {
+                top = freq;
+                count = 1;
+            } else if (freq == top) {
+                count++;
+            }
+        }
+        return count > 0 ? count : cpus;
+    }
+
+    /** SHA-256 of the model file, cached against its size and mtime so it is hashed once. */
+    String modelHash(File modelFile) {
+        String cacheKey = "hash|" + modelFile.length() + "|" + modelFile.lastModified();
+        String cached = prefs.getString(cacheKey, null);
+        if (cached != null) {
+            return cached;
+        }
+        String hash;
+        try (InputStream in = new FileInputStream(modelFile)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format(Locale.US, "%02x", b));
+            }
+            hash = hex.toString();
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            // still unique per file version, just not content-addressed
+            hash = modelFile.length() + "-" + modelFile.lastModified();
+        }
+        prefs.edit().putString(cacheKey, hash).apply();
+        return hash;
+    }
+}
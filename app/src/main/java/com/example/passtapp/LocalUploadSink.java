@@ -0,0 +1,145 @@
+package com.example.passtapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Minimal loopback HTTP receiver standing in for the real collector when checking {@link
+ * ResultUploader} by hand on a device (debug builds: {@code DebugHooksActivity --ez upload_local
+ * true}). Accepts {@code POST}s,
+ * gunzips the body and counts batches; the next {@link #failNext} requests are answered with 503 to
+ * exercise retry and backoff.
+ */
+final class LocalUploadSink implements Closeable {
+
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private final AtomicInteger batches = new AtomicInteger();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile String lastBody;
+    private volatile long bytesReceived;
+
+    LocalUploadSink() throws IOException {
+        server = new ServerSocket(0, 8, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::acceptLoop, "LocalUploadSink");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String getEndpoint() {
+        return "http://127.0.0.1:" + server.getLocalPort() + "/results";
+    }
+
+    int getBatchCount() {
+        return batches.get();
+    }
+
+    long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /** Decompressed JSON of the most recent accepted batch. */
+    String getLastBody() {
+        return lastBody;
+    }
+
+    void failNext(int requests) {
+        failuresLeft.set(requests);
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try (Socket socket = server.accept()) {
+                handle(socket);
+            } catch (IOException ex) {
+                // closed, or a client went away mid-request
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        int contentLength = -1;
+        boolean gzip = false;
+        String line = readLine(in);
+        if (line == null || !line.startsWith("POST")) {
+            respond(socket.getOutputStream(), 405, "Method Not Allowed");
+            return;
+        }
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            String lower = line.toLowerCase(Locale.US);
+            if (lower.startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            } else if (lower.startsWith("content-encoding:")) {
+                gzip = lower.contains("gzip");
+            }
+        }
+        if (contentLength < 0) {
+            respond(socket.getOutputStream(), 411, "Length Required");
+            return;
+        }
+        byte[] body = new byte[contentLength];
+        in.readFully(body);
+        if (failuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            respond(socket.getOutputStream(), 503, "Service Unavailable");
+            return;
+        }
+        bytesReceived += contentLength;
+        lastBody = new String(gzip ? gunzip(body) : body, StandardCharsets.UTF_8);
+        batches.incrementAndGet();
+        respond(socket.getOutputStream(), 200, "OK");
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int len = sb.length();
+                if (len > 0 && sb.charAt(len - 1) == '\r') {
+                    sb.setLength(len - 1);
+                }
+                return sb.toString();
+            }
+            sb.append((char) c);
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static void respond(OutputStream out, int status, String reason) throws IOException {
+        out.write(
+                ("HTTP/1.1 " + status + " " + reason + "\r\n"
+                                + "Content-Length: 0\r\nConnection: close\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.passtapp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Raw model logits keyed by window content, model and noise mode, so offline re-runs over the same
+ * audio (say, after a scene-rule edit) skip the forward. A small in-memory LRU sits in front of a
+ * directory of one file per entry, grouped by model hash; when the directory grows past
+ * {@code maxDiskBytes}, least-recently-used files are deleted down to 90% of the budget.
+ *
+ * <p>The content hash is a 128-bit non-cryptographic mix of the raw float bits: fast enough to be
+ * small next to a forward, and collision-safe for anything short of adversarial input.
+ */
+final class LogitsCache {
+
+    private static final int MEMORY_ENTRIES = 256;
+
+    private final File dir;
+    private final long maxDiskBytes;
+    private final Map<String, float[]> memory =
+            new LinkedHashMap<String, float[]>(MEMORY_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                    return size() > MEMORY_ENTRIES;
+                }
+            };
+    private boolean memoryEnabled = true;
+    private long diskBytes = -1;
+    private long hits;
+    private long misses;
+
+    LogitsCache(File dir, long maxDiskBytes) {
+        this.dir = dir;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    /** Cache key for the exact samples fed to the model. */
+    static String key(float[] samples, String modelHash, String noiseMode) {
+        long h1 = 0x9E3779B97F4A7C15L;
+        long h2 = 0xC2B2AE3D27D4EB4FL ^ samples.length;
+        for (float sample : samples) {
+            long v = Float.floatToRawIntBits(sample) & 0xffffffffL;
+            h1 = Long.rotateLeft((h1 ^ v) * 0x9E3779B97F4A7C15L, 31);
+            h2 = (h2 + v) * 0xFF51AFD7ED558CCDL;
+            h2 ^= h2 >>> 29;
+        }
+        String model = modelHash.length() > 16 ? modelHash.substring(0, 16) : modelHash;
+        return String.format(
+                Locale.US, "%s/%s_%016x%016x", model, noiseMode, fmix(h1), fmix(h2 ^ h1));
+    }
+
+    synchronized float[] get(String key) {
+        float[] logits = memory.get(key);
+        if (logits == null) {
+            logits = readDisk(key);
+            if (logits != null && memoryEnabled) {
+                memory.put(key, logits);
+            }
+        }
+        if (logits == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return logits.clone();
+    }
+
+    synchronized void put(String key, float[] logits) {
+        float[] copy = logits.clone();
+        if (memoryEnabled) {
+            memory.put(key, copy);
+        }
+        writeDisk(key, copy);
+    }
+
+    /** Drops the in-memory front and keeps it off (disk only) until re-enabled. */
+    synchronized void setMemoryEnabled(boolean enabled) {
+        memoryEnabled = enabled;
+        if (!enabled) {
+            memory.clear();
+        }
+    }
+
+    synchronized long getMemoryBytes() {
+        long bytes = 0;
+        for (float[] logits : memory.values()) {
+            bytes += logits.length * 4L;
+        }
+        return bytes;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized void clear() {
+        memory.clear();
+        deleteRecursively(dir);
+        diskBytes = 0;
+    }
+
+    private float[] readDisk(String key) {
+        File file = fileFor(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            float[] logits = new float[bytes.length / 4];
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(logits);
+            // mtime doubles as the LRU clock for eviction
+            file.setLastModified(System.currentTimeMillis());
+            return logits;
+        } catch (IOException ex) {
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, float[] logits) {
+        File file = fileFor(key);
+        File parent = file.getParentFile();
+        if (parent == null || (!parent.isDirectory() && !parent.mkdirs())) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(logits.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(logits);
+        File tmp = new File(parent, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(buffer.array());
+        } catch (IOException ex) {
+            tmp.delete();
+            return;
+        }
+        // a half-written entry must never be read back as logits
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        if (diskBytes < 0) {
+            diskBytes = measure();
+        } else {
+            diskBytes += file.length();
+        }
+        if (diskBytes > maxDiskBytes) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        File[] files = listEntries();
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        long target = maxDiskBytes * 9 / 10;
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        for (int i = 0; i < files.length && total > target; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+            }
+        }
+        diskBytes = total;
+    }
+
+    private long measure() {
+        long total = 0;
+        for (File f : listEntries()) {
+            total += f.length();
+        }
+        return total;
+    }
+
+    private File[] listEntries() {
+        File[] models = dir.listFiles(File::isDirectory);
+        if (models == null) {
+            return new File[0];
+        }
+        File[] all = new File[0];
+        for (File model : models) {
+            File[] entries = model.listFiles((d, name) -> name.endsWith(".bin"));
+            if (entries != null) {
+                int n = all.length;
+                all = Arrays.copyOf(all, n + entries.length);
+                System.arraycopy(entries, 0, all, n, entries.length);
+            }
+        }
+        return all;
+    }
+
+    private File fileFor(String key) {
+        return new File(dir, key + ".bin");
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
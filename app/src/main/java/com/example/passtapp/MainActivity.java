@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Locale;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import androidx.core.content.ContextCompat;
@@ -25,6 +26,7 @@ public class MainActivity extends AppCompatActivity {
 
     private ActivityMainBinding binding;
     private AudioSceneAnalyzer audioSceneAnalyzer;
+    private AppSettings settings;
     private boolean isStreaming = false;
     private String lastScene = null;
 
@@ -46,6 +48,9 @@ public class MainActivity extends AppCompatActivity {
         setContentView(binding.getRoot());
 
         audioSceneAnalyzer = new AudioSceneAnalyzer(this);
+        settings = new AppSettings(this);
+        maybeEnableUpload();
+        applySettings(new boolean[AppSettings.Toggle.values().length], settings.snapshot());
 
         binding.captureButton.setOnClickListener(
                 v -> {
@@ -60,16 +65,37 @@ public class MainActivity extends AppCompatActivity {
                     }
                 });
 
+        // pausing keeps the source open and the ring filled, so resuming answers after one forward
+        binding.pauseButton.setOnClickListener(
+                v -> {
+                    if (!isStreaming) {
+                        return;
+                    }
+                    if (audioSceneAnalyzer.isPaused()) {
+                        audioSceneAnalyzer.resumeStreaming();
+                        binding.pauseButton.setText(getString(R.string.pause_listening));
+                        binding.statusText.setText(getString(R.string.streaming));
+                    } else {
+                        audioSceneAnalyzer.pauseStreaming();
+                        binding.pauseButton.setText(getString(R.string.resume_listening));
+                        binding.statusText.setText(getString(R.string.paused));
+                    }
+                });
+
+        audioSceneAnalyzer.setPlaybackErrorCallback(
+                message -> {
+                    binding.statusText.setText(message);
+                    showCenteredSnackbar(message);
+                });
+
         binding.playRawButton.setOnClickListener(
                 v -> {
-                    pauseStreamingIfNeeded();
                     AudioSceneAnalyzer.PlaybackResult res = audioSceneAnalyzer.playRawBuffer();
                     handlePlaybackResult(res, R.string.play_raw_buffer);
                 });
 
         binding.playProcessedButton.setOnClickListener(
                 v -> {
-                    pauseStreamingIfNeeded();
                     AudioSceneAnalyzer.PlaybackResult res =
                             audioSceneAnalyzer.playProcessedBuffer();
                     handlePlaybackResult(res, R.string.play_processed_buffer);
@@ -77,10 +103,134 @@ public class MainActivity extends AppCompatActivity {
 
         binding.saveBufferButton.setOnClickListener(
                 v -> {
-                    pauseStreamingIfNeeded();
-                    AudioSceneAnalyzer.SaveResult res = audioSceneAnalyzer.saveCurrentBuffers();
-                    handleSaveResult(res);
+                    // snapshots are immutable once published, so capture keeps running while
+                    // the WAV files are written off the UI thread
+                    Thread saver =
+                            new Thread(
+                                    () -> {
+                                        AudioSceneAnalyzer.SaveResult res =
+                                                audioSceneAnalyzer.saveCurrentBuffers();
+                                        runOnUiThread(() -> handleSaveResult(res));
+                                    },
+                                    "SaveBuffers");
+                    saver.setDaemon(true);
+                    saver.start();
+                });
+
+        binding.settingsButton.setOnClickListener(v -> showSettingsDialog());
+
+        binding.statusText.setOnLongClickListener(
+                v -> {
+                    StringBuilder report = new StringBuilder();
+                    DutyCycle.Stats duty = audioSceneAnalyzer.getDutyCycleStats();
+                    if (duty != null) {
+                        report.append(duty.describe()).append('\n');
+                    }
+                    ModelCascade.Stats cascade = audioSceneAnalyzer.getCascadeStats();
+                    if (cascade != null) {
+                        report.append(cascade.describe()).append('\n');
+                    }
+                    report.append(audioSceneAnalyzer.getMemoryReport().describe());
+                    showCenteredSnackbar(report.toString());
+                    return true;
                 });
+
+        // tracing is switched on by the debug-only DebugHooksActivity; long-press save dumps it
+        binding.saveBufferButton.setOnLongClickListener(
+                v -> {
+                    if (!PipelineTrace.isEnabled()) {
+                        return false;
+                    }
+                    String path = audioSceneAnalyzer.exportTrace();
+                    showCenteredSnackbar(
+                            path != null
+                                    ? getString(R.string.trace_saved, path)
+                                    : getString(R.string.trace_export_failed));
+                    return true;
+                });
+    }
+
+    private void maybeEnableUpload() {
+        String endpoint = settings.getUploadEndpoint();
+        if (endpoint.isEmpty()) {
+            return;
+        }
+        audioSceneAnalyzer.enableResultUpload(
+                endpoint,
+                status -> binding.statusText.setText(status),
+                message -> binding.resultText.setText(message));
+    }
+
+    private void showSettingsDialog() {
+        AppSettings.Toggle[] toggles = AppSettings.Toggle.values();
+        CharSequence[] titles = new CharSequence[toggles.length];
+        for (int i = 0; i < toggles.length; i++) {
+            titles[i] = getString(toggles[i].titleResId);
+        }
+        boolean[] before = settings.snapshot();
+        boolean[] checked = before.clone();
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.settings)
+                .setMultiChoiceItems(
+                        titles, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton(
+                        R.string.ok,
+                        (dialog, which) -> {
+                            settings.save(checked);
+                            applySettings(before, checked);
+                        })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /** Applies the switches that differ between {@code before} and {@code after}. */
+    private void applySettings(boolean[] before, boolean[] after) {
+        int adpcm = AppSettings.Toggle.ARCHIVE_ADPCM.ordinal();
+        if (before[adpcm] != after[adpcm]) {
+            audioSceneAnalyzer.setArchiveFormat(
+                    after[adpcm] ? WavWriter.Format.IMA_ADPCM : WavWriter.Format.PCM16);
+        }
+        int cascade = AppSettings.Toggle.CASCADE.ordinal();
+        if (before[cascade] != after[cascade]) {
+            if (after[cascade]) {
+                audioSceneAnalyzer.enableCascade(
+                        status -> binding.statusText.setText(status),
+                        message -> binding.resultText.setText(message));
+            } else {
+                audioSceneAnalyzer.disableCascade();
+            }
+        }
+        int capture = AppSettings.Toggle.EVENT_CAPTURE.ordinal();
+        if (before[capture] != after[capture]) {
+            if (after[capture]) {
+                // 3 s pre-roll, 5 s post-roll, 30 s cooldown, at most 20 clips an hour
+                audioSceneAnalyzer.enableEventCapture(
+                        new TriggerRecorder.Config(3_000, 5_000, 30_000L, 20, true),
+                        (path, reason) -> showCenteredSnackbar(reason + " -> " + path),
+                        message -> binding.resultText.setText(message));
+            } else {
+                audioSceneAnalyzer.disableEventCapture();
+            }
+        }
+        int detection = AppSettings.Toggle.EVENT_DETECTION.ordinal();
+        if (before[detection] != after[detection]) {
+            if (after[detection]) {
+                audioSceneAnalyzer.enableEventDetection(
+                        EventDetector.Config.defaults(),
+                        event -> {
+                            if (!event.isOpen()) {
+                                showCenteredSnackbar(event.describe());
+                            }
+                        });
+            } else {
+                audioSceneAnalyzer.disableEventDetection();
+            }
+        }
+        int duty = AppSettings.Toggle.DUTY_CYCLE.ordinal();
+        int adaptive = AppSettings.Toggle.DUTY_CYCLE_ADAPTIVE.ordinal();
+        if (isStreaming && (before[duty] != after[duty] || before[adaptive] != after[adaptive])) {
+            showCenteredSnackbar(getString(R.string.setting_applies_next_start));
+        }
     }
 
     private boolean hasAudioPermission() {
@@ -93,31 +243,55 @@ public class MainActivity extends AppCompatActivity {
         binding.statusText.setText(getString(R.string.streaming));
         binding.resultText.setText(getString(R.string.listening));
         binding.inferenceTimeText.setText(getString(R.string.inference_time_placeholder));
-        audioSceneAnalyzer.startStreaming(
+        AudioSceneAnalyzer.ResultCallback onResult =
                 result -> {
                     binding.statusText.setText(getString(R.string.detected));
                     renderResult(result);
                     maybeShowSceneDialog(result);
-                },
-                status -> binding.statusText.setText(status),
-                message -> binding.resultText.setText(message),
+                };
+        AudioSceneAnalyzer.StatusCallback onStatus = status -> binding.statusText.setText(status);
+        AudioSceneAnalyzer.ErrorCallback onError = message -> binding.resultText.setText(message);
+        AudioSceneAnalyzer.InferenceTimeCallback onInferenceTime =
                 timeMs ->
                         binding.inferenceTimeText.setText(
-                                getString(R.string.inference_time_ms, timeMs)));
+                                getString(R.string.inference_time_ms, timeMs));
+        if (settings.isEnabled(AppSettings.Toggle.DUTY_CYCLE)) {
+            long periodMs = AppSettings.DUTY_CYCLE_PERIOD_MS;
+            audioSceneAnalyzer.startDutyCycle(
+                    settings.isEnabled(AppSettings.Toggle.DUTY_CYCLE_ADAPTIVE)
+                            ? DutyCycle.Config.adaptive(periodMs)
+                            : DutyCycle.Config.fixed(periodMs),
+                    onResult,
+                    onStatus,
+                    onError,
+                    onInferenceTime);
+        } else {
+            audioSceneAnalyzer.startStreaming(onResult, onStatus, onError, onInferenceTime);
+            // a duty cycle already keeps the mic closed between slots, so only streaming pauses
+            binding.pauseButton.setEnabled(true);
+        }
         isStreaming = true;
     }
 
     private void stopStreaming() {
         binding.captureButton.setText(getString(R.string.start_listening));
+        binding.pauseButton.setText(getString(R.string.pause_listening));
+        binding.pauseButton.setEnabled(false);
         audioSceneAnalyzer.stopStreaming();
         binding.statusText.setText(getString(R.string.stopped));
         isStreaming = false;
     }
 
-    private void pauseStreamingIfNeeded() {
-        if (isStreaming) {
-            stopStreaming();
-        }
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        audioSceneAnalyzer.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        audioSceneAnalyzer.onLowMemory();
     }
 
     @Override
@@ -0,0 +1,137 @@
+package com.example.passtapp;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import java.io.IOException;
+
+/**
+ * Microphone input via {@link AudioRecord}, opened at the device's native rate so the HAL does
+ * not resample for us. Falls back to {@code fallbackRate} when the native rate is refused.
+ */
+final class MicSource implements PcmSource {
+
+    private static final int FALLBACK_NATIVE_RATE = 48_000;
+
+    private final Context context;
+    private final int fallbackRate;
+    private final int chunkSize;
+    private final float normalizer = 1f / Short.MAX_VALUE;
+    private short[] pcm;
+    private AudioRecord recorder;
+
+    MicSource(Context context, int fallbackRate, int chunkSize) {
+        this.context = context.getApplicationContext();
+        this.fallbackRate = fallbackRate;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public int getSampleRate() {
+        ensureRecorder();
+        return recorder.getSampleRate();
+    }
+
+    @Override
+    public void start() {
+        ensureRecorder();
+        recorder.startRecording();
+    }
+
+    @Override
+    public int read(float[] buffer, int offset, int length) throws IOException {
+        if (pcm == null || pcm.length < length) {
+            pcm = new short[Math.max(length, chunkSize)];
+        }
+        int read = recorder.read(pcm, 0, length, AudioRecord.READ_BLOCKING);
+        if (read < 0) {
+            throw new IOException("AudioRecord read failed: " + read);
+        }
+        for (int i = 0; i < read; i++) {
+            buffer[offset + i] = pcm[i] * normalizer;
+        }
+        return read;
+    }
+
+    @Override
+    public String describe() {
+        return "麦克风 " + getSampleRate() + " Hz";
+    }
+
+    @Override
+    public void close() {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.stop();
+        } catch (Exception ignored) {
+            // ignore stop failure
+        }
+        recorder.release();
+        recorder = null;
+    }
+
+    private void ensureRecorder() {
+        if (recorder != null) {
+            return;
+        }
+        int nativeRate = resolveNativeSampleRate();
+        AudioRecord built = buildRecorder(nativeRate);
+        if (built == null && nativeRate != fallbackRate) {
+            built = buildRecorder(fallbackRate);
+        }
+        if (built == null) {
+            throw new IllegalStateException("AudioRecord init failed at " + nativeRate + " Hz");
+        }
+        recorder = built;
+    }
+
+    @SuppressLint("MissingPermission")
+    private AudioRecord buildRecorder(int sampleRate) {
+        int minBuffer =
+                AudioRecord.getMinBufferSize(
+                        sampleRate,
+                        AudioFormat.CHANNEL_IN_MONO,
+                        AudioFormat.ENCODING_PCM_16BIT);
+        if (minBuffer <= 0) {
+            return null;
+        }
+        int bufferSize = Math.max(minBuffer, chunkSize * 2);
+        AudioRecord built =
+                new AudioRecord(
+                        MediaRecorder.AudioSource.MIC,
+                        sampleRate,
+                        AudioFormat.CHANNEL_IN_MONO,
+                        AudioFormat.ENCODING_PCM_16BIT,
+                        bufferSize);
+        if (built.getState() != AudioRecord.STATE_INITIALIZED) {
+            built.release();
+            return null;
+        }
+        return built;
+    }
+
+    private int resolveNativeSampleRate() {
+        AudioManager audioManager =
+                (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        String value =
+                audioManager != null
+                        ? audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE)
+                        : null;
+        if (value != null) {
+            try {
+                int rate = Integer.parseInt(value.trim());
+                if (rate > 0) {
+                    return rate;
+                }
+            } catch (NumberFormatException ignored) {
+                // fall through to default
+            }
+        }
+        return FALLBACK_NATIVE_RATE;
+    }
+}
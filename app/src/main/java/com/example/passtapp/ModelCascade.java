@@ -0,0 +1,215 @@
+package com.example.passtapp;
+
+import java.io.File;
+import java.util.Locale;
+import org.pytorch.IValue;
+import org.pytorch.Module;
+import org.pytorch.Tensor;
+
+/**
+ * First tier of a two-model cascade: a small TorchScript student on the same 10 s, 32 kHz input
+ * and the same 527 AudioSet outputs as PaSST. {@link PaSSTModule} runs the student first and only
+ * pays for the PaSST forward when a scene-rule condition (speech, wind, indoor, outdoor, ...) that
+ * could change the scene lands in the uncertain band around its threshold {@code t}: from {@code
+ * t / band} below to {@code t + (1 - t)(1 - 1 / band)} above, so the band shrinks towards 1 instead
+ * of swallowing the saturated end. Conditions of a rule another condition already decisively fails,
+ * and rules below one that decisively matches, cannot change the scene and are not checked.
+ *
+ * <p>Every {@code auditEvery}-th confident window also runs PaSST, and the two scenes are compared;
+ * that agreement rate is the number to watch when tightening the band. The student is loaded
+ * lazily and dropped by {@link #unload} together with PaSST under memory pressure.
+ */
+final class ModelCascade {
+
+    static final String STUDENT_FILE = "student_model.pt";
+
+    /** Uncertainty band and audit rate. */
+    static final class Config {
+        final float band;
+        final int auditEvery;
+
+        Config(float band, int auditEvery) {
+            this.band = Math.max(1f, band);
+            this.auditEvery = auditEvery;
+        }
+
+        /** Band 2 (0.25..0.75 at 0.5); PaSST double-checks 1 in 20 confident windows. */
+        static Config defaults() {
+            return new Config(2f, 20);
+        }
+    }
+
+    /** Counters since the cascade was enabled. */
+    static final class Stats {
+        final long windows;
+        final long studentOnly;
+        final long audited;
+        final long agreed;
+
+        Stats(long windows, long studentOnly, long audited, long agreed) {
+            this.windows = windows;
+            this.studentOnly = studentOnly;
+            this.audited = audited;
+            this.agreed = agreed;
+        }
+
+        /** Share of windows answered by the student alone. */
+        double hitRate() {
+            return windows > 0 ? (double) studentOnly / windows : 0;
+        }
+
+        /** Share of audited confident windows where PaSST chose the same scene. */
+        double agreement() {
+            return audited > 0 ? (double) agreed / audited : 0;
+        }
+
+        String describe() {
+            return String.format(
+                    Locale.US,
+                    "级联命中 %.1f%% (%d/%d) | 抽检一致 %.1f%% (%d/%d)",
+                    hitRate() * 100,
+                    studentOnly,
+                    windows,
+                    agreement() * 100,
+                    agreed,
+                    audited);
+        }
+    }
+
+    private final File studentFile;
+    private final Config config;
+    private Module student;
+    private long windows;
+    private long studentOnly;
+    private long audited;
+    private long agreed;
+    private long confidentSinceAudit;
+
+    ModelCascade(File studentFile, Config config) {
+        this.studentFile = studentFile;
+        this.config = config;
+    }
+
+    /** Loads the student now so a broken asset fails at enable time, not mid-stream. */
+    synchronized void load() {
+        if (student == null) {
+            try {
+                student = Module.load(studentFile.getAbsolutePath());
+            } catch (Exception ex) {
+                throw new IllegalStateException(
+                        "Failed to load student model " + studentFile.getName(), ex);
+            }
+        }
+    }
+
+    synchronized void unload() {
+        if (student != null) {
+            try {
+                student.destroy();
+            } catch (Exception ignored) {
+                // ignore cleanup errors
+            }
+            student = null;
+        }
+    }
+
+    synchronized long estimateModelBytes() {
+        return student != null ? studentFile.length() : 0;
+    }
+
+    float[] forward(float[] waveform) {
+        Module localStudent;
+        synchronized (this) {
+            load();
+            localStudent = student;
+        }
+        Tensor input = Tensor.fromBlob(waveform, new long[] {1, waveform.length});
+        long span = PipelineTrace.begin(PipelineTrace.STUDENT);
+        try {
+            return localStudent.forward(IValue.from(input)).toTensor().getDataAsFloatArray();
+        } finally {
+            PipelineTrace.end(PipelineTrace.STUDENT, span);
+        }
+    }
+
+    /**
+     * True when a condition that could change the chosen scene is within the band around its
+     * threshold. Rules are walked in priority order: a rule with a condition decisively missed is
+     * skipped, a rule whose conditions all decisively hit ends the walk. {@code values} are the
+     * condition values {@link SceneRules#evaluate} computed from {@code probs} with the same
+     * {@code rules}.
+     */
+    boolean isUncertain(SceneRules rules, float[] probs, float[] values) {
+        if (probs == null
+                || probs.length <= rules.maxLabelIndex()
+                || values == null
+                || values.length < rules.conditionCount()) {
+            return true;
+        }
+        for (int r = 0; r < rules.ruleCount(); r++) {
+            boolean uncertain = false;
+            boolean decidedMiss = false;
+            for (int c = rules.ruleConditionStart(r); c < rules.ruleConditionEnd(r); c++) {
+                if (inBand(rules.threshold(c), values[c])) {
+                    uncertain = true;
+                } else if (!rules.hit(c, values[c])) {
+                    decidedMiss = true;
+                    break;
+                }
+            }
+            if (decidedMiss) {
+                continue;
+            }
+            if (uncertain) {
+                return true;
+            }
+            // every condition clearly hits: this rule wins whatever the rules below say
+            return false;
+        }
+        return false;
+    }
+
+    private boolean inBand(float threshold, float value) {
+        float lower = threshold / config.band;
+        // probabilities saturate at 1; aggregates that can exceed it (sum) keep the ratio
+        float upper =
+                threshold < 1f
+                        ? threshold + (1f - threshold) * (1f - 1f / config.band)
+                        : threshold * config.band;
+        return value >= lower && value <= upper;
+    }
+
+    /** Counts a confident window; true when this one should be double-checked by PaSST. */
+    synchronized boolean onConfident() {
+        if (config.auditEvery <= 0) {
+            return false;
+        }
+        confidentSinceAudit++;
+        if (confidentSinceAudit >= config.auditEvery) {
+            confidentSinceAudit = 0;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized void recordStudentOnly() {
+        windows++;
+        studentOnly++;
+    }
+
+    synchronized void recordEscalated() {
+        windows++;
+    }
+
+    synchronized void recordAudit(boolean sameScene) {
+        windows++;
+        audited++;
+        if (sameScene) {
+            agreed++;
+        }
+    }
+
+    synchronized Stats getStats() {
+        return new Stats(windows, studentOnly, audited, agreed);
+    }
+}
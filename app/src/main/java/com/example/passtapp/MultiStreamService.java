@@ -0,0 +1,473 @@
+package com.example.passtapp;
+
+import android.content.Context;
+import android.os.SystemClock;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.pytorch.PyTorchAndroid;
+
+/**
+ * Classifies many PCM streams at once. Each {@link Stream} owns its resampler, 10 s ring, hop
+ * schedule and noise mode; windows from all streams share a bounded pool of {@link PaSSTModule}
+ * instances, one per worker thread.
+ *
+ * <p>Scheduling is round-robin: a stream holds at most one queued window and at most one window
+ * in flight, and rejoins the back of the ready queue after each result, so a fast producer cannot
+ * starve the others. A window that is replaced before a worker picks it up counts as a drop.
+ *
+ * <p>Every pooled module is a full copy of the model, so the pool is capped at {@link #MAX_POOL};
+ * the cores are split between the workers via the global PyTorch intra-op thread count, set once
+ * after every worker has loaded. Pooled modules skip per-instance thread tuning.
+ */
+final class MultiStreamService {
+
+    static final int MAX_POOL = 3;
+
+    private static final int LATENCY_SAMPLES = 512;
+
+    interface StreamListener {
+        /** Called on a pool worker; {@code latencyMs} runs from window completion to result. */
+        void onResult(String streamId, SceneResult result, long latencyMs);
+
+        void onError(String streamId, Exception error);
+    }
+
+    /** Point-in-time counters for one stream. */
+    static final class Metrics {
+        final String streamId;
+        final long submitted;
+        final long completed;
+        final long dropped;
+        final long p50Ms;
+        final long p95Ms;
+        final long maxMs;
+
+        Metrics(
+                String streamId,
+                long submitted,
+                long completed,
+                long dropped,
+                long p50Ms,
+                long p95Ms,
+                long maxMs) {
+            this.streamId = streamId;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.dropped = dropped;
+            this.p50Ms = p50Ms;
+            this.p95Ms = p95Ms;
+            this.maxMs = maxMs;
+        }
+    }
+
+    /** Push side of one stream. {@link #write} must be called from a single producer thread. */
+    final class Stream {
+        private final String id;
+        private final StreamListener listener;
+        private final PolyphaseResampler resampler;
+        private final float[] ring;
+        private final int hopSamples;
+        private float[] resampled = new float[0];
+        private int writePos;
+        private boolean filled;
+        private int sinceWindow;
+        private volatile AudioSceneAnalyzer.NoiseMode noiseMode =
+                AudioSceneAnalyzer.NoiseMode.STANDARD;
+        private volatile boolean closed;
+
+        // guarded by MultiStreamService.this
+        private float[] pending;
+        private long pendingNs;
+        private boolean queued;
+        private boolean inFlight;
+
+        // guarded by this
+        private long submitted;
+        private long completed;
+        private long dropped;
+        private final long[] latencies = new long[LATENCY_SAMPLES];
+        private int latencyCount;
+
+        private Stream(String id, int inputRate, int hopMs, StreamListener listener) {
+            this.id = id;
+            this.listener = listener;
+            this.resampler =
+                    inputRate != sampleRate
+                            ? new PolyphaseResampler(
+                                    inputRate, sampleRate, PolyphaseResampler.Quality.BALANCED)
+                            : null;
+            this.ring = new float[expectedSamples];
+            this.hopSamples = Math.max(1, (int) ((long) hopMs * sampleRate / 1000));
+        }
+
+        String getId() {
+            return id;
+        }
+
+        /** Appends samples at the stream's input rate; completes a window every hop once full. */
+        void write(float[] samples, int offset, int length) {
+            if (closed) {
+                return;
+            }
+            float[] data = samples;
+            int off = offset;
+            int len = length;
+            if (resampler != null) {
+                int max = resampler.maxOutput(length);
+                if (resampled.length < max) {
+                    resampled = new float[max];
+                }
+                len = resampler.process(samples, offset, length, resampled, 0);
+                data = resampled;
+                off = 0;
+            }
+            for (int i = 0; i < len; i++) {
+                ring[writePos] = data[off + i];
+                writePos++;
+                if (writePos == ring.length) {
+                    writePos = 0;
+                    filled = true;
+                }
+                sinceWindow++;
+                if (filled && sinceWindow >= hopSamples) {
+                    sinceWindow = 0;
+                    submitWindow();
+                }
+            }
+        }
+
+        void close() {
+            closeStream(this);
+        }
+
+        synchronized Metrics getMetrics() {
+            long[] sorted = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_SAMPLES));
+            Arrays.sort(sorted);
+            return new Metrics(
+                    id,
+                    submitted,
+                    completed,
+                    dropped,
+                    percentile(sorted, 0.50),
+                    percentile(sorted, 0.95),
+                    sorted.length > 0 ? sorted[sorted.length - 1] : 0);
+        }
+
+        private void submitWindow() {
+            float[] window = new float[ring.length];
+            int first = ring.length - writePos;
+            System.arraycopy(ring, writePos, window, 0, first);
+            System.arraycopy(ring, 0, window, first, writePos);
+            submit(this, AudioSceneAnalyzer.applyNoiseReduction(window, noiseMode));
+        }
+
+        private synchronized void recordSubmitted(boolean replaced) {
+            submitted++;
+            if (replaced) {
+                dropped++;
+            }
+        }
+
+        private synchronized void recordCompleted(long latencyMs) {
+            latencies[latencyCount % LATENCY_SAMPLES] = latencyMs;
+            latencyCount++;
+            completed++;
+        }
+    }
+
+    private final int sampleRate;
+    private final int expectedSamples;
+    private final List<PaSSTModule> pool;
+    private final List<Thread> workers = new ArrayList<>();
+    private final ArrayDeque<Stream> ready = new ArrayDeque<>();
+    private final Map<String, Stream> streams = new LinkedHashMap<>();
+    private final long startedNs = System.nanoTime();
+    private long completedTotal;
+    private boolean running = true;
+    private int loadedWorkers;
+
+    /** Creates {@code poolSize} model copies (clamped to 1..{@link #MAX_POOL}). */
+    MultiStreamService(Context context, int sampleRate, int poolSize) {
+        this(sampleRate, createPool(context, sampleRate, poolSize));
+    }
+
+    MultiStreamService(int sampleRate, List<PaSSTModule> pool) {
+        this.sampleRate = sampleRate;
+        this.expectedSamples = sampleRate * 10;
+        this.pool = pool;
+        int cpus = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int threadsPerWorker = Math.max(1, cpus / pool.size());
+        for (PaSSTModule module : pool) {
+            module.setFixedThreads(threadsPerWorker);
+        }
+        for (int i = 0; i < pool.size(); i++) {
+            PaSSTModule module = pool.get(i);
+            Thread worker =
+                    new Thread(() -> workerLoop(module, threadsPerWorker), "StreamWorker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Pool sizing sweep: for each size 1..{@link #MAX_POOL}, feeds {@code streams} unpaced
+     * synthetic 48 kHz streams, discards the first {@code warmupMs} (model load, ring fill) and
+     * returns windows/s over the following {@code measureMs}; index {@code size - 1}. Blocking.
+     */
+    static double[] measurePoolSizes(
+            Context context, int sampleRate, int streams, long warmupMs, long measureMs)
+            throws IOException, InterruptedException {
+        double[] windowsPerSecond = new double[MAX_POOL];
+        for (int size = 1; size <= MAX_POOL; size++) {
+            MultiStreamService service = new MultiStreamService(context, sampleRate, size);
+            try {
+                for (int s = 0; s < streams; s++) {
+                    service.attachSource(
+                            "sweep-" + s,
+                            SyntheticSource.noise(48_000, 0.1f, false),
+                            1_000,
+                            new StreamListener() {
+                                @Override
+                                public void onResult(
+                                        String streamId, SceneResult result, long latencyMs) {}
+
+                                @Override
+                                public void onError(String streamId, Exception error) {}
+                            });
+                }
+                Thread.sleep(warmupMs);
+                long before = service.getCompletedCount();
+                long startMs = SystemClock.elapsedRealtime();
+                Thread.sleep(measureMs);
+                long elapsedMs = SystemClock.elapsedRealtime() - startMs;
+                windowsPerSecond[size - 1] =
+                        (service.getCompletedCount() - before) * 1000.0 / elapsedMs;
+            } finally {
+                service.release();
+            }
+        }
+        return windowsPerSecond;
+    }
+
+    /** Default pool size: one model per two cores, capped by {@link #MAX_POOL}. */
+    static int defaultPoolSize() {
+        return Math.max(1, Math.min(MAX_POOL, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    private static List<PaSSTModule> createPool(Context context, int sampleRate, int poolSize) {
+        int size = Math.max(1, Math.min(MAX_POOL, poolSize));
+        List<PaSSTModule> modules = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            modules.add(new PaSSTModule(context, sampleRate));
+        }
+        return modules;
+    }
+
+    /** Opens a push stream. {@code hopMs} is the spacing between windows once the ring is full. */
+    synchronized Stream openStream(String id, int inputRate, int hopMs, StreamListener listener) {
+        if (streams.containsKey(id)) {
+            throw new IllegalStateException("Stream already open: " + id);
+        }
+        Stream stream = new Stream(id, inputRate, hopMs, listener);
+        streams.put(id, stream);
+        return stream;
+    }
+
+    /** Opens a stream fed by {@code source} on its own reader thread until it ends or closes. */
+    Stream attachSource(String id, PcmSource source, int hopMs, StreamListener listener)
+            throws IOException {
+        source.start();
+        Stream stream;
+        try {
+            stream = openStream(id, source.getSampleRate(), hopMs, listener);
+        } catch (RuntimeException ex) {
+            source.close();
+            throw ex;
+        }
+        Thread reader =
+                new Thread(
+                        () -> {
+                            float[] chunk = new float[2048];
+                            try {
+                                while (!stream.closed) {
+                                    int read = source.read(chunk, 0, chunk.length);
+                                    if (read == PcmSource.END_OF_STREAM) {
+                                        break;
+                                    }
+                                    stream.write(chunk, 0, read);
+                                }
+                            } catch (IOException ex) {
+                                listener.onError(id, ex);
+                            } finally {
+                                source.close();
+                                stream.close();
+                            }
+                        },
+                        "StreamReader-" + id);
+        reader.setDaemon(true);
+        reader.start();
+        return stream;
+    }
+
+    synchronized List<Metrics> getMetrics() {
+        List<Metrics> out = new ArrayList<>(streams.size());
+        for (Stream stream : streams.values()) {
+            out.add(stream.getMetrics());
+        }
+        return out;
+    }
+
+    /** Results per second across all streams since the service started. */
+    synchronized double getWindowsPerSecond() {
+        double seconds = (System.nanoTime() - startedNs) / 1e9;
+        return seconds > 0 ? completedTotal / seconds : 0;
+    }
+
+    synchronized long getCompletedCount() {
+        return completedTotal;
+    }
+
+    int getPoolSize() {
+        return pool.size();
+    }
+
+    void release() {
+        synchronized (this) {
+            running = false;
+            for (Stream stream : streams.values()) {
+                stream.closed = true;
+            }
+            streams.clear();
+            ready.clear();
+            notifyAll();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (PaSSTModule module : pool) {
+            module.release();
+        }
+    }
+
+    private synchronized void submit(Stream stream, float[] window) {
+        if (!running || stream.closed) {
+            return;
+        }
+        boolean replaced = stream.pending != null;
+        stream.pending = window;
+        stream.pendingNs = System.nanoTime();
+        stream.recordSubmitted(replaced);
+        if (!stream.queued && !stream.inFlight) {
+            stream.queued = true;
+            ready.addLast(stream);
+            notify();
+        }
+    }
+
+    private synchronized void closeStream(Stream stream) {
+        stream.closed = true;
+        stream.pending = null;
+        ready.remove(stream);
+        streams.remove(stream.id, stream);
+    }
+
+    private void workerLoop(PaSSTModule module, int threads) {
+        InferenceTuner.applyInferencePriority();
+        Exception loadError = null;
+        try {
+            module.getBackendName();
+        } catch (Exception ex) {
+            loadError = ex;
+        }
+        synchronized (this) {
+            // the pool shares one PyTorch thread pool: split the cores once, after every load,
+            // so no worker's setup runs under another's setting
+            if (++loadedWorkers == pool.size()) {
+                PyTorchAndroid.setNumThreads(threads);
+                notifyAll();
+            }
+            while (running && loadedWorkers < pool.size()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+        if (loadError != null) {
+            failAll(loadError);
+            return;
+        }
+        while (true) {
+            Stream stream;
+            float[] window;
+            long queuedNs;
+            synchronized (this) {
+                while (running && ready.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                stream = ready.pollFirst();
+                stream.queued = false;
+                window = stream.pending;
+                queuedNs = stream.pendingNs;
+                stream.pending = null;
+                stream.inFlight = true;
+            }
+            boolean classified = false;
+            try {
+                SceneResult result = module.classify(window, window.length);
+                classified = true;
+                long latencyMs = (System.nanoTime() - queuedNs) / 1_000_000L;
+                stream.noiseMode = AudioSceneAnalyzer.noiseModeFor(result, stream.noiseMode);
+                stream.recordCompleted(latencyMs);
+                stream.listener.onResult(stream.id, result, latencyMs);
+            } catch (Exception ex) {
+                stream.listener.onError(stream.id, ex);
+            } finally {
+                synchronized (this) {
+                    // failed windows are not throughput
+                    if (classified) {
+                        completedTotal++;
+                    }
+                    stream.inFlight = false;
+                    // back of the line: every other waiting stream goes first
+                    if (stream.pending != null && !stream.closed) {
+                        stream.queued = true;
+                        ready.addLast(stream);
+                        notify();
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized void failAll(Exception error) {
+        for (Stream stream : streams.values()) {
+            stream.listener.onError(stream.id, error);
+        }
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.floor(q * (sorted.length - 1)))];
+    }
+}
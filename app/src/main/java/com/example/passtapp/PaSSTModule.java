@@ -1,15 +1,20 @@
 package com.example.passtapp;
 
 import android.content.Context;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.regex.Pattern;
+import org.json.JSONException;
 import org.pytorch.IValue;
 import org.pytorch.Module;
 import org.pytorch.Tensor;
@@ -17,32 +22,48 @@ import org.pytorch.Tensor;
 public class PaSSTModule {
 
     private static final String MODEL_FILE = "passt_model.pt";
+    private static final String RULES_FILE = "scene_rules.json";
+    private static final long RULES_CHECK_INTERVAL_MS = 5_000;
+    // pooled copies load concurrently; one copy at a time, and never a half-written file
+    private static final Object ASSET_COPY_LOCK = new Object();
     private static final Pattern CSV_SPLIT_REGEX =
             Pattern.compile(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
-    // AudioSet indices for scene classification
-    private static final int IDX_SPEECH = 0;
-    private static final int IDX_WIND = 285;
-    private static final int[] IDXS_INDOOR = {506, 507, 508};
-    private static final int[] IDXS_OUTDOOR = {509, 510};
-
-    // Thresholds
-    private static final float TH_SPEECH = 0.50f;
-    private static final float TH_WIND = 0.02f;
-    private static final float TH_INDOOR = 0.04f;
-    private static final float TH_OUTDOOR = 0.04f;
-
     private final Context context;
     private final int expectedSamples;
     private Module module;
     private List<String> labels;
+    private List<String> englishLabels;
     private String backend = "CPU";
+    private File modelFile;
+    private final InferenceTuner tuner;
+    private volatile SceneRules sceneRules;
+    private long rulesFileModified;
+    private long rulesCheckedAtMs;
+    private final ThreadLocal<float[]> ruleValues = new ThreadLocal<>();
+    private volatile LogitsCache logitsCache;
+    private volatile ModelCascade cascade;
+    private String modelHash;
+    private int fixedThreads;
 
     public PaSSTModule(Context context, int sampleRate) {
         this.context = context.getApplicationContext();
         this.expectedSamples = sampleRate * 10;
+        this.tuner = new InferenceTuner(this.context);
     }
 
     public SceneResult classify(float[] buffer, int validSamples) {
+        return classify(buffer, validSamples, null);
+    }
+
+    /**
+     * Like {@link #classify(float[], int)}, but when a {@link LogitsCache} is set and {@code mode}
+     * is given, a window seen before with the same model and mode skips the forward. Meant for
+     * offline re-runs; live audio never repeats, so streaming passes no mode.
+     *
+     * <p>With a {@link ModelCascade} enabled, live windows (no mode) go to the student first and
+     * reach PaSST only when it is unsure; offline re-runs always use PaSST.
+     */
+    SceneResult classify(float[] buffer, int validSamples, AudioSceneAnalyzer.NoiseMode mode) {
         Module localModule = getModule();
         List<String> localLabels = getLabels();
 
@@ -51,12 +72,57 @@ public class PaSSTModule {
         int copyLength = Math.min(usableSamples, waveform.length);
         System.arraycopy(buffer, 0, waveform, 0, copyLength);
 
-        Tensor inputTensor = Tensor.fromBlob(waveform, new long[] {1, waveform.length});
-        float[] logits = localModule.forward(IValue.from(inputTensor)).toTensor().getDataAsFloatArray();
+        // one rules snapshot per window: a reload must not land between student and PaSST
+        SceneRules rules = getSceneRules();
+        ModelCascade localCascade = mode == null ? cascade : null;
+        SceneClassification studentScene = null;
+        boolean audit = false;
+        if (localCascade != null) {
+            float[] studentProbs = buildProbabilities(localCascade.forward(waveform));
+            studentScene = classifyScene(rules, studentProbs);
+            boolean uncertain = localCascade.isUncertain(rules, studentProbs, ruleValues.get());
+            audit = !uncertain && localCascade.onConfident();
+            if (!uncertain && !audit) {
+                localCascade.recordStudentOnly();
+                return new SceneResult(
+                        buildPredictions(studentProbs, localLabels),
+                        studentScene,
+                        studentProbs,
+                        System.currentTimeMillis());
+            }
+        }
+
+        LogitsCache cache = mode != null ? logitsCache : null;
+        String cacheKey =
+                cache != null ? LogitsCache.key(waveform, getModelHash(), mode.name()) : null;
+        float[] logits = cache != null ? cache.get(cacheKey) : null;
+        if (logits == null) {
+            Tensor inputTensor = Tensor.fromBlob(waveform, new long[] {1, waveform.length});
+            long forwardSpan = PipelineTrace.begin(PipelineTrace.FORWARD);
+            try {
+                logits =
+                        localModule
+                                .forward(IValue.from(inputTensor))
+                                .toTensor()
+                                .getDataAsFloatArray();
+            } finally {
+                PipelineTrace.end(PipelineTrace.FORWARD, forwardSpan);
+            }
+            if (cache != null) {
+                cache.put(cacheKey, logits);
+            }
+        }
+        long postSpan = PipelineTrace.begin(PipelineTrace.POSTPROCESS);
         float[] probs = buildProbabilities(logits);
-        SceneClassification scene = classifyScene(probs);
+        SceneClassification scene = classifyScene(rules, probs);
         List<Prediction> predictions = buildPredictions(probs, localLabels);
-        return new SceneResult(predictions, scene);
+        PipelineTrace.end(PipelineTrace.POSTPROCESS, postSpan);
+        if (audit) {
+            localCascade.recordAudit(studentScene.getScene().equals(scene.getScene()));
+        } else if (localCascade != null) {
+            localCascade.recordEscalated();
+        }
+        return new SceneResult(predictions, scene, probs, System.currentTimeMillis());
     }
 
     private float[] buildProbabilities(float[] logits) {
@@ -93,10 +159,109 @@ public class PaSSTModule {
     private synchronized Module getModule() {
         if (module == null) {
             module = loadModuleSafely(MODEL_FILE);
+            // calibration would hold up the first result; see calibrateThreadsIfNeeded
+            int threads = fixedThreads > 0 ? fixedThreads : tuner.applyStored(modelFile);
+            backend = "CPU x" + threads;
         }
         return module;
     }
 
+    /** True while the thread count is a default guess that a calibration should replace. */
+    synchronized boolean needsThreadCalibration() {
+        return module != null && fixedThreads <= 0 && !tuner.hasStored(modelFile);
+    }
+
+    /**
+     * Runs the deferred thread-count calibration if {@link #needsThreadCalibration}. Takes tens of
+     * seconds on a slow device, so call it on the inference thread after a result is out.
+     */
+    synchronized boolean calibrateThreadsIfNeeded() {
+        if (!needsThreadCalibration()) {
+            return false;
+        }
+        applyThreadTuning(false);
+        return true;
+    }
+
+    /**
+     * For pooled copies that share PyTorch's global thread pool: the owner sets the split once, so
+     * this module neither calibrates (concurrent calibrations would time each other) nor calls
+     * {@code setNumThreads}. Call before the first classify.
+     */
+    synchronized void setFixedThreads(int threads) {
+        this.fixedThreads = threads;
+    }
+
+    /** Re-times the forward at each candidate thread count and stores the new winner. */
+    public synchronized void recalibrateThreads() {
+        getModule();
+        applyThreadTuning(true);
+    }
+
+    /** SHA-256 of the loaded TorchScript file. */
+    public synchronized String getModelHash() {
+        getModule();
+        if (modelHash == null) {
+            modelHash = tuner.modelHash(modelFile);
+        }
+        return modelHash;
+    }
+
+    /**
+     * Rough native footprint of the loaded model: the TorchScript weights, which dominate. Zero
+     * while unloaded.
+     */
+    public synchronized long estimateModelBytes() {
+        ModelCascade localCascade = cascade;
+        long student = localCascade != null ? localCascade.estimateModelBytes() : 0;
+        return (module != null && modelFile != null ? modelFile.length() : 0) + student;
+    }
+
+    public synchronized boolean isLoaded() {
+        return module != null;
+    }
+
+    /**
+     * Puts the student from {@code assets/student_model.pt} in front of PaSST for live windows.
+     * Throws {@link IllegalStateException} if the asset is missing or does not load.
+     */
+    void enableCascade(ModelCascade.Config config) {
+        ModelCascade next =
+                new ModelCascade(new File(copyAsset(ModelCascade.STUDENT_FILE)), config);
+        next.load();
+        disableCascade();
+        cascade = next;
+    }
+
+    void disableCascade() {
+        ModelCascade previous = cascade;
+        cascade = null;
+        if (previous != null) {
+            previous.unload();
+        }
+    }
+
+    ModelCascade getCascade() {
+        return cascade;
+    }
+
+    /** Cache consulted by the mode-aware {@link #classify}; {@code null} disables it. */
+    void setLogitsCache(LogitsCache cache) {
+        this.logitsCache = cache;
+    }
+
+    LogitsCache getLogitsCache() {
+        return logitsCache;
+    }
+
+    private void applyThreadTuning(boolean force) {
+        int threads =
+                fixedThreads > 0
+                        ? fixedThreads
+                        : tuner.tune(module, modelFile, expectedSamples, force);
+        backend = "CPU x" + threads;
+    }
+
     private synchronized List<String> getLabels() {
         if (labels == null) {
             labels = loadLabels();
@@ -104,6 +269,36 @@ public class PaSSTModule {
         return labels;
     }
 
+    private synchronized List<String> getEnglishLabels() {
+        getLabels();
+        return englishLabels;
+    }
+
+    /** Returns the AudioSet index of {@code label} (display or English name), or -1. */
+    public int findLabelIndex(String label) {
+        if (label == null) {
+            return -1;
+        }
+        String wanted = label.trim();
+        List<String> localLabels = getLabels();
+        List<String> english = getEnglishLabels();
+        for (int i = 0; i < localLabels.size(); i++) {
+            if (localLabels.get(i).equalsIgnoreCase(wanted)
+                    || (i < english.size() && english.get(i).equalsIgnoreCase(wanted))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Display name of AudioSet index {@code index}, or the index itself if out of range. */
+    public String getLabelName(int index) {
+        List<String> localLabels = getLabels();
+        return index >= 0 && index < localLabels.size()
+                ? localLabels.get(index)
+                : String.valueOf(index);
+    }
+
     public String getBackendName() {
         getModule(); // ensure initialized
         return backend;
@@ -111,6 +306,7 @@ public class PaSSTModule {
 
     private Module loadModuleSafely(String fileName) {
         String filePath = copyAsset(fileName);
+        modelFile = new File(filePath);
         try {
             backend = "CPU";
             return Module.load(filePath);
@@ -126,7 +322,10 @@ public class PaSSTModule {
         List<String> errors = new ArrayList<>();
         for (String file : candidates) {
             try {
-                return readLabelsFromFile(file);
+                List<String> english = new ArrayList<>();
+                List<String> result = readLabelsFromFile(file, english);
+                englishLabels = english;
+                return result;
             } catch (IOException ex) {
                 errors.add(file + ": " + ex.getLocalizedMessage());
             }
@@ -136,7 +335,8 @@ public class PaSSTModule {
                         + String.join("; ", errors));
     }
 
-    private List<String> readLabelsFromFile(String fileName) throws IOException {
+    private List<String> readLabelsFromFile(String fileName, List<String> english)
+            throws IOException {
         List<String> result = new ArrayList<>();
         try (java.io.InputStream input = context.getAssets().open(fileName);
                 java.io.BufferedReader lines =
@@ -149,6 +349,7 @@ public class PaSSTModule {
                     continue;
                 }
                 String[] tokens = CSV_SPLIT_REGEX.split(line);
+                english.add(tokens.length >= 3 ? tokens[2].trim().replace("\"", "") : "");
                 if (tokens.length >= 4 && !tokens[3].trim().isEmpty()) {
                     result.add(tokens[3].trim().replace("\"", ""));
                 } else if (tokens.length >= 3) {
@@ -163,22 +364,37 @@ public class PaSSTModule {
         return result;
     }
 
+    /**
+     * Copies {@code assetName} into the files dir once and returns its path. The copy goes to a
+     * {@code .part} sibling renamed on success, under a process-wide lock, so a concurrent or
+     * interrupted copy never leaves a truncated model under the final name.
+     */
     private String copyAsset(String assetName) {
         File file = new File(context.getFilesDir(), assetName);
-        if (file.exists() && file.length() > 0) {
-            return file.getAbsolutePath();
-        }
-        try (java.io.InputStream input = context.getAssets().open(assetName);
-                FileOutputStream output = new FileOutputStream(file)) {
-            byte[] buffer = new byte[8 * 1024];
-            int read;
-            while ((read = input.read(buffer)) != -1) {
-                output.write(buffer, 0, read);
+        synchronized (ASSET_COPY_LOCK) {
+            if (file.exists() && file.length() > 0) {
+                return file.getAbsolutePath();
+            }
+            File tmp = new File(file.getParentFile(), assetName + ".part");
+            try {
+                try (InputStream input = context.getAssets().open(assetName);
+                        FileOutputStream output = new FileOutputStream(tmp)) {
+                    byte[] buffer = new byte[8 * 1024];
+                    int read;
+                    while ((read = input.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                    }
+                    output.flush();
+                }
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Cannot rename " + tmp + " to " + file.getName());
+                }
+            } catch (IOException ex) {
+                tmp.delete();
+                throw new IllegalStateException(
+                        "Missing asset " + assetName + ". Place it under app/src/main/assets.",
+                        ex);
             }
-            output.flush();
-        } catch (IOException ex) {
-            throw new IllegalStateException(
-                    "Missing asset " + assetName + ". Place it under app/src/main/assets.", ex);
         }
         return file.getAbsolutePath();
     }
@@ -194,6 +410,11 @@ public class PaSSTModule {
                 module = null;
             }
         }
+        // reloaded on the next live window
+        ModelCascade localCascade = cascade;
+        if (localCascade != null) {
+            localCascade.unload();
+        }
     }
 
     private static float sigmoid(float value) {
@@ -201,51 +422,105 @@ public class PaSSTModule {
         return expValue / (1f + expValue);
     }
 
-    private SceneClassification classifyScene(float[] probs) {
-        if (probs == null || probs.length <= IDX_WIND) {
-            return new SceneClassification("未知", "概率维度不足");
+    /**
+     * Recompiles the scene rules from {@code files/scene_rules.json}, or the bundled asset when no
+     * override exists. The previous rules stay active if the new file does not compile.
+     */
+    public void reloadSceneRules() {
+        File override = new File(context.getFilesDir(), RULES_FILE);
+        long modified = override.exists() ? override.lastModified() : 0;
+        String json;
+        try {
+            json = modified != 0 ? readFile(override) : readAsset(RULES_FILE);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read " + RULES_FILE, ex);
         }
-        float pSpeech = probs[IDX_SPEECH];
-        float pWind = probs[IDX_WIND];
-        float pIndoorMax = maxAt(probs, IDXS_INDOOR);
-        float pOutdoorMax = maxAt(probs, IDXS_OUTDOOR);
-
-        boolean hasSpeech = pSpeech >= TH_SPEECH;
-        boolean hasIndoor = pIndoorMax >= TH_INDOOR;
-        boolean hasWind = pWind >= TH_WIND;
-        boolean hasOutdoor = pOutdoorMax >= TH_OUTDOOR;
-
-        String scene;
-        if (hasSpeech && hasIndoor) {
-            scene = "会议模式";
-        } else if (hasWind && hasOutdoor) {
-            scene = "户外降噪";
-        } else {
-            scene = "标准降噪";
-        }
-
-        String debug =
-                "场景="
-                        + scene
-                        + " | 语音="
-                        + fmtCn(pSpeech, hasSpeech, TH_SPEECH)
-                        + " | 室内最大="
-                        + fmtCn(pIndoorMax, hasIndoor, TH_INDOOR)
-                        + " | 风噪="
-                        + fmtCn(pWind, hasWind, TH_WIND)
-                        + " | 户外最大="
-                        + fmtCn(pOutdoorMax, hasOutdoor, TH_OUTDOOR);
-        return new SceneClassification(scene, debug);
-    }
-
-    private static float maxAt(float[] probs, int[] indices) {
-        float max = 0f;
-        for (int idx : indices) {
-            if (idx >= 0 && idx < probs.length) {
-                max = Math.max(max, probs[idx]);
+        try {
+            sceneRules = SceneRules.compile(json, getLabels().size(), this::resolveRuleLabel);
+        } catch (JSONException ex) {
+            throw new IllegalStateException("Invalid " + RULES_FILE + ": " + ex.getMessage(), ex);
+        } finally {
+            synchronized (this) {
+                // a broken file is not retried until it changes again
+                rulesFileModified = modified;
             }
         }
-        return max;
+    }
+
+    private SceneRules getSceneRules() {
+        long now = System.currentTimeMillis();
+        boolean reload;
+        synchronized (this) {
+            reload = sceneRules == null;
+            if (!reload && now - rulesCheckedAtMs >= RULES_CHECK_INTERVAL_MS) {
+                rulesCheckedAtMs = now;
+                File override = new File(context.getFilesDir(), RULES_FILE);
+                reload = (override.exists() ? override.lastModified() : 0) != rulesFileModified;
+            }
+        }
+        if (reload) {
+            try {
+                reloadSceneRules();
+            } catch (IllegalStateException ex) {
+                if (sceneRules == null) {
+                    throw ex;
+                }
+                // keep serving the last good rules
+            }
+        }
+        return sceneRules;
+    }
+
+    private int resolveRuleLabel(String label) {
+        try {
+            return Integer.parseInt(label.trim());
+        } catch (NumberFormatException ignored) {
+            return findLabelIndex(label);
+        }
+    }
+
+    private SceneClassification classifyScene(SceneRules rules, float[] probs) {
+        if (probs == null || probs.length <= rules.maxLabelIndex()) {
+            return new SceneClassification("未知", "概率维度不足");
+        }
+        float[] values = ruleValues.get();
+        if (values == null || values.length < rules.conditionCount()) {
+            values = new float[rules.conditionCount()];
+            ruleValues.set(values);
+        }
+        int rule = rules.evaluate(probs, values);
+        String scene = rules.sceneOf(rule);
+
+        StringBuilder debug = new StringBuilder("场景=").append(scene);
+        for (int c = 0; c < rules.conditionCount(); c++) {
+            debug.append(" | ")
+                    .append(rules.conditionName(c))
+                    .append('=')
+                    .append(fmtCn(values[c], rules.hit(c, values[c]), rules.threshold(c)));
+        }
+        return new SceneClassification(scene, debug.toString(), rules.noiseModeOf(rule));
+    }
+
+    private String readAsset(String assetName) throws IOException {
+        try (InputStream input = context.getAssets().open(assetName)) {
+            return readStream(input);
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            return readStream(input);
+        }
+    }
+
+    private static String readStream(InputStream input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8 * 1024];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
     }
 
     private static String fmtCn(float value, boolean hit, float th) {
@@ -279,10 +554,37 @@ class Prediction {
 class SceneResult {
     private final List<Prediction> predictions;
     private final SceneClassification scene;
+    private final float[] probabilities;
+    private final long timestampMs;
+    private final long windowStartMs;
+    private final long windowEndMs;
+
+    SceneResult(
+            List<Prediction> predictions,
+            SceneClassification scene,
+            float[] probabilities,
+            long timestampMs) {
+        this(predictions, scene, probabilities, timestampMs, timestampMs, timestampMs);
+    }
 
-    SceneResult(List<Prediction> predictions, SceneClassification scene) {
+    private SceneResult(
+            List<Prediction> predictions,
+            SceneClassification scene,
+            float[] probabilities,
+            long timestampMs,
+            long windowStartMs,
+            long windowEndMs) {
         this.predictions = predictions;
         this.scene = scene;
+        this.probabilities = probabilities;
+        this.timestampMs = timestampMs;
+        this.windowStartMs = windowStartMs;
+        this.windowEndMs = windowEndMs;
+    }
+
+    /** Same result, stamped with the wall-clock span of the audio it was computed from. */
+    SceneResult withWindow(long startMs, long endMs) {
+        return new SceneResult(predictions, scene, probabilities, timestampMs, startMs, endMs);
     }
 
     public List<Prediction> getPredictions() {
@@ -293,6 +595,26 @@ class SceneResult {
         return scene;
     }
 
+    /** Full per-label probability vector in AudioSet order; not copied, do not modify. */
+    public float[] getProbabilities() {
+        return probabilities;
+    }
+
+    /** When inference finished. */
+    public long getTimestampMs() {
+        return timestampMs;
+    }
+
+    /** Wall-clock time of the window's first sample; the finish time if the window is unknown. */
+    public long getWindowStartMs() {
+        return windowStartMs;
+    }
+
+    /** Wall-clock time of the window's last sample; the finish time if the window is unknown. */
+    public long getWindowEndMs() {
+        return windowEndMs;
+    }
+
     public String formatForDisplay() {
         if (predictions == null || predictions.isEmpty()) {
             return "暂无预测结果";
@@ -317,10 +639,16 @@ class SceneResult {
 class SceneClassification {
     private final String scene;
     private final String debug;
+    private final String noiseMode;
 
     SceneClassification(String scene, String debug) {
+        this(scene, debug, null);
+    }
+
+    SceneClassification(String scene, String debug, String noiseMode) {
         this.scene = scene;
         this.debug = debug;
+        this.noiseMode = noiseMode;
     }
 
     public String getScene() {
@@ -330,4 +658,9 @@ class SceneClassification {
     public String getDebug() {
         return debug;
     }
+
+    /** Noise mode named by the matching rule, or null when unknown. */
+    public String getNoiseMode() {
+        return noiseMode;
+    }
 }
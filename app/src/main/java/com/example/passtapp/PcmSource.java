@@ -0,0 +1,36 @@
+package com.example.passtapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Mono PCM input for the analyzer. Implementations deliver samples in [-1, 1] at their own
+ * {@link #getSampleRate()}; the analyzer resamples to the model rate.
+ */
+interface PcmSource extends Closeable {
+
+    int END_OF_STREAM = -1;
+
+    /** Creates a fresh source for each capture session. */
+    interface Factory {
+        PcmSource create() throws IOException;
+    }
+
+    int getSampleRate();
+
+    void start() throws IOException;
+
+    /**
+     * Blocks until at least one sample is available.
+     *
+     * @return samples read, 0 if none were ready, or {@link #END_OF_STREAM}
+     */
+    int read(float[] buffer, int offset, int length) throws IOException;
+
+    /** Short human-readable description for status lines. */
+    String describe();
+
+    /** Stops and releases the source; safe to call more than once. */
+    @Override
+    void close();
+}
@@ -0,0 +1,163 @@
+package com.example.passtapp;
+
+import android.os.Trace;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipeline timeline for "why was this result late" questions. Spans go into a fixed in-memory
+ * ring (flat arrays, no per-event allocation) and, on device, into {@link Trace} sections so they
+ * also show up in Perfetto/systrace captures. {@link #writeChromeJson} dumps the ring in Chrome
+ * trace format for chrome://tracing or ui.perfetto.dev.
+ *
+ * <p>When disabled, {@link #begin} is one volatile read and {@link #end} returns on a zero start.
+ * Span names must be constants; they are stored by reference.
+ */
+final class PipelineTrace {
+
+    static final String READ = "source.read";
+    static final String WINDOW = "window.assemble";
+    static final String DENOISE = "noise.reduce";
+    static final String QUEUE = "inference.queue";
+    static final String CLASSIFY = "classify";
+    static final String STUDENT = "student.forward";
+    static final String FORWARD = "forward";
+    static final String POSTPROCESS = "postprocess";
+    static final String DELIVER_QUEUE = "main.queue";
+    static final String DELIVER = "main.deliver";
+
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+
+    private static volatile boolean enabled;
+
+    private static final AtomicLong next = new AtomicLong();
+    private static final String[] names = new String[CAPACITY];
+    private static final long[] startNs = new long[CAPACITY];
+    private static final long[] durationNs = new long[CAPACITY];
+    private static final long[] threadIds = new long[CAPACITY];
+    private static final Map<Long, String> threadNames = new HashMap<>();
+    private static final ThreadLocal<Long> currentThreadId =
+            ThreadLocal.withInitial(
+                    () -> {
+                        Thread t = Thread.currentThread();
+                        synchronized (threadNames) {
+                            threadNames.put(t.getId(), t.getName());
+                        }
+                        return t.getId();
+                    });
+
+    private PipelineTrace() {}
+
+    static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void clear() {
+        next.set(0);
+    }
+
+    /** Opens a span on the calling thread; returns 0 when tracing is off. */
+    static long begin(String name) {
+        if (!enabled) {
+            return 0L;
+        }
+        Trace.beginSection(name);
+        return System.nanoTime();
+    }
+
+    /** Closes a span opened by {@link #begin} on the same thread. */
+    static void end(String name, long beginNs) {
+        if (beginNs == 0L) {
+            return;
+        }
+        Trace.endSection();
+        record(name, beginNs, System.nanoTime());
+    }
+
+    /** Records a span measured elsewhere, e.g. queueing delay between two threads. */
+    static void record(String name, long fromNs, long toNs) {
+        if (fromNs == 0L) {
+            return;
+        }
+        int slot = (int) (next.getAndIncrement() & MASK);
+        names[slot] = name;
+        startNs[slot] = fromNs;
+        durationNs[slot] = toNs - fromNs;
+        threadIds[slot] = currentThreadId.get();
+    }
+
+    /**
+     * Writes the ring, oldest first, as a Chrome trace. Slots overwritten while exporting may
+     * show up torn; export after pausing if that matters.
+     */
+    static int writeChromeJson(File out) throws IOException {
+        long end = next.get();
+        long first = Math.max(0, end - CAPACITY);
+        int written = 0;
+        try (Writer w =
+                new BufferedWriter(
+                        new OutputStreamWriter(
+                                new FileOutputStream(out), StandardCharsets.UTF_8))) {
+            w.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            boolean comma = false;
+            synchronized (threadNames) {
+                for (Map.Entry<Long, String> e : threadNames.entrySet()) {
+                    if (comma) {
+                        w.write(',');
+                    }
+                    w.write("\n{\"ph\":\"M\",\"pid\":1,\"tid\":" + e.getKey());
+                    w.write(",\"name\":\"thread_name\",\"args\":{\"name\":\"");
+                    w.write(escape(e.getValue()));
+                    w.write("\"}}");
+                    comma = true;
+                }
+            }
+            for (long i = first; i < end; i++) {
+                int slot = (int) (i & MASK);
+                String name = names[slot];
+                if (name == null) {
+                    continue;
+                }
+                if (comma) {
+                    w.write(',');
+                }
+                // Chrome trace timestamps are microseconds
+                w.write("\n{\"ph\":\"X\",\"pid\":1,\"tid\":");
+                w.write(Long.toString(threadIds[slot]));
+                w.write(",\"name\":\"");
+                w.write(name);
+                w.write("\",\"ts\":");
+                w.write(micros(startNs[slot]));
+                w.write(",\"dur\":");
+                w.write(micros(durationNs[slot]));
+                w.write('}');
+                comma = true;
+                written++;
+            }
+            w.write("\n]}\n");
+        }
+        return written;
+    }
+
+    private static String micros(long nanos) {
+        return nanos / 1000 + "." + String.format(Locale.US, "%03d", Math.abs(nanos % 1000));
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.passtapp;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+
+/**
+ * Long-lived playback path: one {@link AudioTrack#MODE_STREAM} track fed in small blocks by a
+ * dedicated thread. A new {@link #play} cancels whatever is playing; {@link #seek} moves the read
+ * position of the current buffer. Neither touches the capture or inference threads.
+ *
+ * <p>If the track cannot be created or a write fails, the feeder thread reports the error to the
+ * {@link ErrorListener} and exits; the next {@link #play} starts a fresh one. A failing feeder
+ * detaches itself under the lock and starts a replacement if a newer {@code play} arrived in the
+ * meantime, so a racing {@code play} is never left without a feeder.
+ */
+final class PlaybackEngine {
+
+    private static final int BLOCK_SAMPLES = 1024;
+
+    interface ErrorListener {
+        /** Called on the feeder thread; playback has stopped. */
+        void onPlaybackError(Exception error);
+    }
+
+    private final int sampleRate;
+    private final Object lock = new Object();
+    private final short[] block = new short[BLOCK_SAMPLES];
+    private volatile ErrorListener errorListener;
+
+    // guarded by lock
+    private Thread thread;
+    private float[] source;
+    private int position;
+    private boolean flushRequested;
+    private boolean released;
+
+    PlaybackEngine(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    void setErrorListener(ErrorListener listener) {
+        this.errorListener = listener;
+    }
+
+    /** Starts playing {@code samples} from the beginning, replacing any current playback. */
+    boolean play(float[] samples) {
+        if (samples == null || samples.length == 0) {
+            return false;
+        }
+        synchronized (lock) {
+            if (released) {
+                return false;
+            }
+            ensureThread();
+            source = samples;
+            position = 0;
+            flushRequested = true;
+            lock.notifyAll();
+        }
+        return true;
+    }
+
+    /** Moves the play position of the current buffer; ignored when idle. */
+    void seek(long positionMs) {
+        synchronized (lock) {
+            if (source == null) {
+                return;
+            }
+            long target = positionMs * sampleRate / 1000;
+            position = (int) Math.max(0, Math.min(source.length, target));
+            flushRequested = true;
+        }
+    }
+
+    void stop() {
+        synchronized (lock) {
+            source = null;
+            flushRequested = true;
+            lock.notifyAll();
+        }
+    }
+
+    boolean isPlaying() {
+        synchronized (lock) {
+            return source != null;
+        }
+    }
+
+    /** Current position in ms of the buffer being played, or -1 when idle. */
+    long getPositionMs() {
+        synchronized (lock) {
+            return source != null ? position * 1000L / sampleRate : -1;
+        }
+    }
+
+    void release() {
+        Thread t;
+        synchronized (lock) {
+            released = true;
+            source = null;
+            lock.notifyAll();
+            t = thread;
+            thread = null;
+        }
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    private void ensureThread() {
+        if (thread == null) {
+            thread = new Thread(this::runLoop, "AudioPlayback");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void runLoop() {
+        AudioTrack track = null;
+        float[] current = null;
+        try {
+            while (true) {
+                float[] buf;
+                int start;
+                boolean flush;
+                synchronized (lock) {
+                    while (source == null && !released) {
+                        if (flushRequested) {
+                            break;
+                        }
+                        lock.wait();
+                    }
+                    if (released) {
+                        return;
+                    }
+                    buf = source;
+                    current = buf;
+                    start = position;
+                    flush = flushRequested;
+                    flushRequested = false;
+                }
+                if (track == null) {
+                    track = createTrack();
+                }
+                if (flush) {
+                    track.pause();
+                    track.flush();
+                }
+                if (buf == null) {
+                    continue;
+                }
+                int n = Math.min(BLOCK_SAMPLES, buf.length - start);
+                for (int i = 0; i < n; i++) {
+                    float v = Math.max(-1f, Math.min(1f, buf[start + i]));
+                    block[i] = (short) (v * Short.MAX_VALUE);
+                }
+                if (track.getPlayState() != AudioTrack.PLAYSTATE_PLAYING) {
+                    track.play();
+                }
+                // blocking write paces the loop at the playback rate
+                int written = track.write(block, 0, n);
+                if (written < 0) {
+                    throw new IllegalStateException("AudioTrack write failed: " + written);
+                }
+                boolean finished = false;
+                synchronized (lock) {
+                    // a play/seek/stop during the write wins over our bookkeeping
+                    if (source == buf && position == start && !flushRequested) {
+                        position = start + n;
+                        if (position >= buf.length) {
+                            source = null;
+                            finished = true;
+                        }
+                    }
+                }
+                if (finished) {
+                    // in stream mode stop() lets the queued tail play out
+                    track.stop();
+                }
+            }
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            synchronized (lock) {
+                // only the buffer that failed is dropped; a play() that raced in keeps its buffer
+                if (source == current) {
+                    source = null;
+                }
+                if (thread == Thread.currentThread()) {
+                    thread = null;
+                    if (source != null && !released) {
+                        ensureThread();
+                    }
+                }
+            }
+            ErrorListener listener = errorListener;
+            if (listener != null) {
+                listener.onPlaybackError(ex);
+            }
+        } finally {
+            if (track != null) {
+                try {
+                    track.stop();
+                } catch (Exception ignored) {
+                    // ignore stop failure
+                }
+                track.release();
+            }
+            synchronized (lock) {
+                // let the next play() start a new feeder
+                if (thread == Thread.currentThread()) {
+                    thread = null;
+                }
+            }
+        }
+    }
+
+    private AudioTrack createTrack() {
+        int minBuffer =
+                AudioTrack.getMinBufferSize(
+                        sampleRate, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        AudioTrack created =
+                new AudioTrack(
+                        AudioManager.STREAM_MUSIC,
+                        sampleRate,
+                        AudioFormat.CHANNEL_OUT_MONO,
+                        AudioFormat.ENCODING_PCM_16BIT,
+                        Math.max(minBuffer, BLOCK_SAMPLES * 4),
+                        AudioTrack.MODE_STREAM);
+        if (created.getState() != AudioTrack.STATE_INITIALIZED) {
+            created.release();
+            throw new IllegalStateException("AudioTrack init failed at " + sampleRate + " Hz");
+        }
+        return created;
+    }
+}
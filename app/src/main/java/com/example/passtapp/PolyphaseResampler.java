@@ -0,0 +1,182 @@
+package com.example.passtapp;
+
+/**
+ * Streaming rational resampler (L/M polyphase FIR). Filter history and phase are kept across
+ * {@link #process} calls so chunks can be fed as they arrive from the recorder; no allocation
+ * happens after construction.
+ */
+final class PolyphaseResampler {
+
+    /**
+     * Stopband rejection and passband edge (fraction of the lower Nyquist). The stopband starts at
+     * the lower Nyquist, so nothing above it aliases back; a wider passband or deeper stopband
+     * means more taps per branch.
+     */
+    enum Quality {
+        FAST(40, 0.70f),
+        BALANCED(70, 0.80f),
+        HIGH(90, 0.90f);
+
+        final int attenuationDb;
+        final float passband;
+
+        Quality(int attenuationDb, float passband) {
+            this.attenuationDb = attenuationDb;
+            this.passband = passband;
+        }
+    }
+
+    private final int inputRate;
+    private final int outputRate;
+    private final int up;
+    private final int down;
+    private final int taps;
+    private final boolean passthrough;
+    // coefficients[phase * taps + k] multiplies history sample (newest - k)
+    private final float[] coefficients;
+    // history is mirrored (writePos and writePos + taps) so each dot product reads a linear run
+    private final float[] history;
+    private int writePos;
+    private int phase;
+
+    PolyphaseResampler(int inputRate, int outputRate, Quality quality) {
+        if (inputRate <= 0 || outputRate <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid sample rates: " + inputRate + " -> " + outputRate);
+        }
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        int g = gcd(inputRate, outputRate);
+        this.up = outputRate / g;
+        this.down = inputRate / g;
+        this.passthrough = up == down;
+        this.taps = passthrough ? 1 : tapsPerPhase(up, down, quality);
+        this.coefficients = passthrough ? new float[] {1f} : designFilter(up, down, quality);
+        this.history = new float[taps * 2];
+    }
+
+    int getInputRate() {
+        return inputRate;
+    }
+
+    int getOutputRate() {
+        return outputRate;
+    }
+
+    /** Upper bound on the number of samples {@link #process} can emit for {@code inputLength}. */
+    int maxOutput(int inputLength) {
+        return (int) (((long) inputLength * up + down - 1) / down) + 1;
+    }
+
+    /**
+     * Resamples {@code length} samples from {@code in} into {@code out} starting at {@code outOffset}.
+     *
+     * @return number of samples written to {@code out}
+     */
+    int process(float[] in, int offset, int length, float[] out, int outOffset) {
+        if (passthrough) {
+            System.arraycopy(in, offset, out, outOffset, length);
+            return length;
+        }
+        int produced = 0;
+        for (int i = 0; i < length; i++) {
+            float x = in[offset + i];
+            writePos = writePos == 0 ? taps - 1 : writePos - 1;
+            history[writePos] = x;
+            history[writePos + taps] = x;
+            while (phase < up) {
+                int base = phase * taps;
+                float acc = 0f;
+                for (int k = 0; k < taps; k++) {
+                    acc += coefficients[base + k] * history[writePos + k];
+                }
+                out[outOffset + produced++] = acc;
+                phase += down;
+            }
+            phase -= up;
+        }
+        return produced;
+    }
+
+    /** Clears filter history, e.g. after the recorder was restarted. */
+    void reset() {
+        java.util.Arrays.fill(history, 0f);
+        writePos = 0;
+        phase = 0;
+    }
+
+    /** Kaiser's length estimate for the transition band, split over {@code up} branches. */
+    static int tapsPerPhase(int up, int down, Quality quality) {
+        double stopEdge = 0.5 / Math.max(up, down);
+        double transition = stopEdge * (1 - quality.passband);
+        double length = (quality.attenuationDb - 8) / (2.285 * 2 * Math.PI * transition) + 1;
+        return Math.max(4, (int) Math.ceil(length / up));
+    }
+
+    private static float[] designFilter(int up, int down, Quality quality) {
+        int taps = tapsPerPhase(up, down, quality);
+        int length = up * taps;
+        // frequencies relative to the upsampled rate; the stopband edge sits on the lower Nyquist
+        double stopEdge = 0.5 / Math.max(up, down);
+        double cutoff = stopEdge * (1 + quality.passband) / 2;
+        double beta = kaiserBeta(quality.attenuationDb);
+        double i0Beta = besselI0(beta);
+        double center = (length - 1) / 2.0;
+        double[] prototype = new double[length];
+        for (int n = 0; n < length; n++) {
+            double t = n - center;
+            double sinc =
+                    t == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * t) / (Math.PI * t);
+            double ratio = length > 1 ? t / center : 0;
+            double window = besselI0(beta * Math.sqrt(Math.max(0, 1 - ratio * ratio))) / i0Beta;
+            prototype[n] = sinc * window;
+        }
+        // Normalize each branch to unity DC gain so the output level matches the input.
+        float[] coefficients = new float[length];
+        for (int p = 0; p < up; p++) {
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                sum += prototype[k * up + p];
+            }
+            double scale = sum != 0 ? 1.0 / sum : up;
+            for (int k = 0; k < taps; k++) {
+                coefficients[p * taps + k] = (float) (prototype[k * up + p] * scale);
+            }
+        }
+        return coefficients;
+    }
+
+    private static double kaiserBeta(double attenuationDb) {
+        if (attenuationDb > 50) {
+            return 0.1102 * (attenuationDb - 8.7);
+        }
+        if (attenuationDb > 21) {
+            return 0.5842 * Math.pow(attenuationDb - 21, 0.4) + 0.07886 * (attenuationDb - 21);
+        }
+        return 0;
+    }
+
+    /** Zeroth-order modified Bessel function of the first kind, by its power series. */
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double half = x / 2;
+        for (int k = 1; k < 64; k++) {
+            term *= (half / k) * (half / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.passtapp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Replays a directory of WAV files through the analyzer's preprocessing and {@link PaSSTModule}
+ * as fast as the device allows, for every noise mode / window length / hop combination.
+ *
+ * <p>The JSON report carries latency percentiles, windows per second, peak heap and, when a
+ * baseline exists, top-1, top-5 and scene agreement and the baseline's p50 latency. The first run
+ * (or a run with {@code updateBaseline}) writes the baseline; {@code tools/run_benchmark.sh} turns
+ * the comparison into a pass/fail gate.
+ *
+ * <p>Windows shorter than the model's input are zero-padded to it, as in streaming under memory
+ * pressure. Their combos say so ({@code zeroPaddedToMs}); compare their agreement only with the
+ * same combo's baseline, never with the full-length windows.
+ */
+final class RegressionBenchmark {
+
+    static final int[] DEFAULT_WINDOW_MS = {10_000, 5_000};
+    static final int[] DEFAULT_HOP_MS = {10_000, 2_500};
+
+    private final PaSSTModule module;
+    private final int sampleRate;
+    private final int expectedSamples;
+    private final File corpusDir;
+    private final File baselineFile;
+    private final File reportFile;
+    private final int[] windowMs;
+    private final int[] hopMs;
+    private final boolean updateBaseline;
+    private final boolean useCache;
+
+    RegressionBenchmark(
+            PaSSTModule module,
+            int sampleRate,
+            int expectedSamples,
+            File corpusDir,
+            int[] windowMs,
+            int[] hopMs,
+            boolean updateBaseline,
+            boolean useCache) {
+        this.module = module;
+        this.sampleRate = sampleRate;
+        this.expectedSamples = expectedSamples;
+        this.corpusDir = corpusDir;
+        this.baselineFile = new File(corpusDir, "baseline.json");
+        this.reportFile = new File(corpusDir, "report.json");
+        this.windowMs = windowMs;
+        this.hopMs = hopMs;
+        this.updateBaseline = updateBaseline;
+        this.useCache = useCache;
+    }
+
+    File getReportFile() {
+        return reportFile;
+    }
+
+    /** Writes a report that only carries {@code error}, so a polling script stops waiting. */
+    void writeFailure(Exception error) {
+        try {
+            JSONObject report = new JSONObject();
+            report.put("timestampMs", System.currentTimeMillis());
+            report.put(
+                    "error",
+                    error.getLocalizedMessage() != null
+                            ? error.getLocalizedMessage()
+                            : error.toString());
+            writeJson(reportFile, report);
+        } catch (IOException | JSONException ignored) {
+            // the script's deadline covers this
+        }
+    }
+
+    JSONObject run() throws IOException, JSONException {
+        File[] files =
+                corpusDir.listFiles((d, name) -> name.toLowerCase(Locale.US).endsWith(".wav"));
+        if (files == null || files.length == 0) {
+            throw new IOException("No WAV files in " + corpusDir);
+        }
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        Map<String, float[]> corpus = new LinkedHashMap<>();
+        for (File file : files) {
+            corpus.put(
+                    file.getName(),
+                    WavReader.readAll(file, sampleRate, PolyphaseResampler.Quality.HIGH));
+        }
+
+        JSONObject baseline = updateBaseline ? null : readJson(baselineFile);
+        JSONObject baselineWindows = baseline != null ? baseline.optJSONObject("windows") : null;
+        JSONObject baselineLatency =
+                baselineWindows != null ? baseline.optJSONObject("latencyP50Ms") : null;
+        JSONObject currentWindows = new JSONObject();
+        JSONObject currentLatency = new JSONObject();
+        JSONArray combos = new JSONArray();
+        long overallPeakHeap = 0;
+
+        // warm-up so the first combination does not absorb model load, JIT or the deferred
+        // thread calibration
+        module.classify(new float[expectedSamples], expectedSamples);
+        module.calibrateThreadsIfNeeded();
+
+        for (AudioSceneAnalyzer.NoiseMode mode : AudioSceneAnalyzer.NoiseMode.values()) {
+            for (int window : windowMs) {
+                for (int hop : hopMs) {
+                    String comboKey =
+                            String.format(Locale.US, "%s/w%d/h%d", mode.name(), window, hop);
+                    JSONObject windowsOut = new JSONObject();
+                    JSONObject expected =
+                            baselineWindows != null
+                                    ? baselineWindows.optJSONObject(comboKey)
+                                    : null;
+                    ComboStats stats = runCombo(corpus, mode, window, hop, windowsOut, expected);
+                    currentWindows.put(comboKey, windowsOut);
+                    currentLatency.put(comboKey, stats.p50Ms());
+                    overallPeakHeap = Math.max(overallPeakHeap, stats.peakHeap);
+                    JSONObject combo = stats.toJson(comboKey, mode, window, hop);
+                    if (baselineLatency != null && baselineLatency.has(comboKey)) {
+                        combo.put("baselineLatencyP50Ms", baselineLatency.getDouble(comboKey));
+                    }
+                    int modelMs = (int) ((long) expectedSamples * 1000 / sampleRate);
+                    if (window < modelMs) {
+                        combo.put("zeroPaddedToMs", modelMs);
+                    }
+                    combos.put(combo);
+                }
+            }
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("timestampMs", System.currentTimeMillis());
+        report.put("backend", module.getBackendName());
+        report.put("sampleRate", sampleRate);
+        report.put("files", new JSONArray(new ArrayList<>(corpus.keySet())));
+        report.put("baseline", baselineWindows != null ? baselineFile.getName() : JSONObject.NULL);
+        report.put("peakHeapBytes", overallPeakHeap);
+        report.put("combos", combos);
+        LogitsCache cache = useCache ? module.getLogitsCache() : null;
+        if (cache != null) {
+            report.put(
+                    "logitsCache",
+                    new JSONObject()
+                            .put("hits", cache.getHits())
+                            .put("misses", cache.getMisses()));
+        }
+        writeJson(reportFile, report);
+        if (baselineWindows == null) {
+            JSONObject newBaseline = new JSONObject();
+            newBaseline.put("timestampMs", System.currentTimeMillis());
+            newBaseline.put("windows", currentWindows);
+            // cache hits are not model latency; such a baseline gates agreement only
+            if (!useCache) {
+                newBaseline.put("latencyP50Ms", currentLatency);
+            }
+            writeJson(baselineFile, newBaseline);
+        }
+        return report;
+    }
+
+    private ComboStats runCombo(
+            Map<String, float[]> corpus,
+            AudioSceneAnalyzer.NoiseMode mode,
+            int window,
+            int hop,
+            JSONObject windowsOut,
+            JSONObject expected)
+            throws JSONException {
+        int windowSamples = Math.min(expectedSamples, (int) ((long) window * sampleRate / 1000));
+        int hopSamples = Math.max(1, (int) ((long) hop * sampleRate / 1000));
+        ComboStats stats = new ComboStats();
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long comboStart = System.nanoTime();
+        for (Map.Entry<String, float[]> entry : corpus.entrySet()) {
+            float[] audio = entry.getValue();
+            stats.audioMs += audio.length * 1000L / sampleRate;
+            // clips shorter than one window still yield a single zero-padded window
+            for (int start = 0;
+                    start == 0 || start + windowSamples <= audio.length;
+                    start += hopSamples) {
+                long t0 = System.nanoTime();
+                // same shape as the streaming path: fresh snapshot, then mode-specific cleanup
+                float[] snapshot = new float[expectedSamples];
+                int valid = Math.max(0, Math.min(windowSamples, audio.length - start));
+                System.arraycopy(audio, start, snapshot, 0, valid);
+                float[] processed = AudioSceneAnalyzer.applyNoiseReduction(snapshot, mode);
+                // with the cache on, unchanged windows skip the forward: rule edits re-run fast,
+                // but latencies then measure cache hits, not the model
+                SceneResult result =
+                        module.classify(processed, Math.max(1, valid), useCache ? mode : null);
+                stats.latenciesNs.add(System.nanoTime() - t0);
+                stats.peakHeap =
+                        Math.max(stats.peakHeap, runtime.totalMemory() - runtime.freeMemory());
+
+                String windowKey = entry.getKey() + "@" + (start * 1000L / sampleRate);
+                JSONObject current = describe(result);
+                windowsOut.put(windowKey, current);
+                JSONObject reference = expected != null ? expected.optJSONObject(windowKey) : null;
+                if (reference != null) {
+                    stats.compare(current, reference);
+                }
+                if (valid < windowSamples) {
+                    break;
+                }
+            }
+        }
+        stats.wallNs = System.nanoTime() - comboStart;
+        return stats;
+    }
+
+    private static JSONObject describe(SceneResult result) throws JSONException {
+        JSONObject out = new JSONObject();
+        JSONArray top = new JSONArray();
+        for (Prediction p : result.getPredictions()) {
+            top.put(p.getLabel());
+        }
+        out.put("top5", top);
+        out.put("scene", result.getScene() != null ? result.getScene().getScene() : "");
+        return out;
+    }
+
+    private static JSONObject readJson(File file) throws IOException, JSONException {
+        if (!file.exists()) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int off = 0;
+            while (off < bytes.length) {
+                int n = in.read(bytes, off, bytes.length - off);
+                if (n < 0) {
+                    break;
+                }
+                off += n;
+            }
+        }
+        return new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static void writeJson(File file, JSONObject json) throws IOException, JSONException {
+        // write then rename so pollers never see a half-written report
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(json.toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot write " + file);
+        }
+    }
+
+    private static final class ComboStats {
+        final List<Long> latenciesNs = new ArrayList<>();
+        long peakHeap;
+        long wallNs;
+        long audioMs;
+        int compared;
+        int top1Matches;
+        double top5Overlap;
+        int sceneMatches;
+
+        void compare(JSONObject current, JSONObject reference) throws JSONException {
+            JSONArray cur = current.getJSONArray("top5");
+            JSONArray ref = reference.getJSONArray("top5");
+            Set<String> refSet = new HashSet<>();
+            for (int i = 0; i < ref.length(); i++) {
+                refSet.add(ref.getString(i));
+            }
+            int overlap = 0;
+            for (int i = 0; i < cur.length(); i++) {
+                if (refSet.contains(cur.getString(i))) {
+                    overlap++;
+                }
+            }
+            compared++;
+            top5Overlap += refSet.isEmpty() ? 1.0 : (double) overlap / refSet.size();
+            if (cur.length() > 0
+                    && ref.length() > 0
+                    && cur.getString(0).equals(ref.getString(0))) {
+                top1Matches++;
+            }
+            if (current.optString("scene").equals(reference.optString("scene"))) {
+                sceneMatches++;
+            }
+        }
+
+        double p50Ms() {
+            long[] sorted = new long[latenciesNs.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = latenciesNs.get(i);
+            }
+            Arrays.sort(sorted);
+            return percentileMs(sorted, 0.50);
+        }
+
+        JSONObject toJson(String key, AudioSceneAnalyzer.NoiseMode mode, int window, int hop)
+                throws JSONException {
+            long[] sorted = new long[latenciesNs.size()];
+            double sum = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = latenciesNs.get(i);
+                sum += sorted[i];
+            }
+            Arrays.sort(sorted);
+            JSONObject latency = new JSONObject();
+            latency.put("mean", sorted.length > 0 ? sum / sorted.length / 1e6 : 0);
+            latency.put("p50", percentileMs(sorted, 0.50));
+            latency.put("p90", percentileMs(sorted, 0.90));
+            latency.put("p99", percentileMs(sorted, 0.99));
+            latency.put("max", percentileMs(sorted, 1.0));
+
+            double wallSec = wallNs / 1e9;
+            JSONObject out = new JSONObject();
+            out.put("key", key);
+            out.put("mode", mode.name());
+            out.put("windowMs", window);
+            out.put("hopMs", hop);
+            out.put("windows", sorted.length);
+            out.put("wallMs", wallNs / 1_000_000L);
+            out.put("windowsPerSec", wallSec > 0 ? sorted.length / wallSec : 0);
+            out.put("realtimeFactor", wallSec > 0 ? audioMs / 1000.0 / wallSec : 0);
+            out.put("latencyMs", latency);
+            out.put("peakHeapBytes", peakHeap);
+            out.put("baselineWindows", compared);
+            if (compared > 0) {
+                out.put("top1Agreement", (double) top1Matches / compared);
+                out.put("top5Agreement", top5Overlap / compared);
+                out.put("sceneAgreement", (double) sceneMatches / compared);
+            }
+            return out;
+        }
+
+        private static double percentileMs(long[] sorted, double q) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int idx = (int) Math.ceil(q * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, idx))] / 1e6;
+        }
+    }
+}
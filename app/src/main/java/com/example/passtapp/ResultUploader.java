@@ -0,0 +1,358 @@
+package com.example.passtapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Ships results off the device in gzip'd JSON batches. {@link #offer} only enqueues into a bounded
+ * in-memory queue (dropping, never blocking, when full); a single background thread groups results
+ * into batches, spools each batch to {@code dir} first and then POSTs the spool oldest-first.
+ *
+ * <p>The spool is capped at {@code maxSpoolBytes}, oldest batches dropped first, so a device that
+ * stays offline cannot fill storage. Failed deliveries back off exponentially with jitter; a 4xx
+ * other than 408/429 means the server will never accept the batch, so it is discarded.
+ */
+final class ResultUploader {
+
+    private static final int PENDING_CAPACITY = 256;
+    private static final long MIN_BACKOFF_MS = 5_000L;
+    private static final long MAX_BACKOFF_MS = 10 * 60_000L;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 15_000;
+
+    /** Batching and spool limits. */
+    static final class Config {
+        final String endpoint;
+        final int batchSize;
+        final long maxBatchAgeMs;
+        final long maxSpoolBytes;
+        final int topK;
+
+        Config(String endpoint, int batchSize, long maxBatchAgeMs, long maxSpoolBytes, int topK) {
+            this.endpoint = endpoint;
+            this.batchSize = batchSize;
+            this.maxBatchAgeMs = maxBatchAgeMs;
+            this.maxSpoolBytes = maxSpoolBytes;
+            this.topK = topK;
+        }
+
+        static Config defaults(String endpoint) {
+            return new Config(endpoint, 30, 5 * 60_000L, 4L * 1024 * 1024, 5);
+        }
+    }
+
+    interface Listener {
+        void onDelivered(int batches, int bytes);
+
+        void onFailed(String reason);
+    }
+
+    private final Config config;
+    private final File dir;
+    private final Listener listener;
+    private final BlockingQueue<SceneResult> pending = new ArrayBlockingQueue<>(PENDING_CAPACITY);
+    private final ScheduledExecutorService worker;
+    private final List<SceneResult> batch = new ArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private long batchStartMs;
+    private long backoffMs;
+    private long nextAttemptMs;
+    private int sequence;
+    private ScheduledFuture<?> ageFlush;
+
+    ResultUploader(Config config, File dir, Listener listener) {
+        this.config = config;
+        this.dir = dir;
+        this.listener = listener;
+        ScheduledThreadPoolExecutor executor =
+                new ScheduledThreadPoolExecutor(
+                        1,
+                        r -> {
+                            Thread t = new Thread(r, "ResultUploader");
+                            t.setDaemon(true);
+                            return t;
+                        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.worker = executor;
+        // leftovers from a previous run go out first
+        worker.execute(this::deliverSpool);
+    }
+
+    /**
+     * Inference thread: never blocks; drops the result if the uploader has fallen far behind or
+     * has been released.
+     */
+    void offer(SceneResult result) {
+        if (result == null) {
+            return;
+        }
+        if (!pending.offer(result)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (pending.size() == 1) {
+            try {
+                worker.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                // released while the inference thread was still publishing
+                pending.remove(result);
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Spools whatever is batched and tries one delivery, e.g. before the app goes away. */
+    void flush() {
+        try {
+            worker.execute(
+                    () -> {
+                        drain();
+                        spoolBatch();
+                        nextAttemptMs = 0;
+                        deliverSpool();
+                    });
+        } catch (RejectedExecutionException ignored) {
+            // already released; the last flush ran on release
+        }
+    }
+
+    void release() {
+        flush();
+        worker.shutdown();
+    }
+
+    private void drain() {
+        SceneResult result;
+        while ((result = pending.poll()) != null) {
+            if (batch.isEmpty()) {
+                batchStartMs = System.currentTimeMillis();
+                ageFlush = schedule(this::flushAged, config.maxBatchAgeMs);
+            }
+            batch.add(result);
+            if (batch.size() >= config.batchSize) {
+                spoolBatch();
+                deliverSpool();
+            }
+        }
+    }
+
+    private void flushAged() {
+        drain();
+        if (!batch.isEmpty()
+                && System.currentTimeMillis() - batchStartMs >= config.maxBatchAgeMs) {
+            spoolBatch();
+            deliverSpool();
+        }
+    }
+
+    private void spoolBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (ageFlush != null) {
+            ageFlush.cancel(false);
+            ageFlush = null;
+        }
+        byte[] body;
+        try {
+            body = gzip(encodeBatch(batch).getBytes(StandardCharsets.UTF_8));
+        } catch (JSONException | IOException ex) {
+            batch.clear();
+            listener.onFailed("encode: " + ex.getMessage());
+            return;
+        }
+        batch.clear();
+        if (!dir.exists() && !dir.mkdirs()) {
+            listener.onFailed("Cannot create " + dir);
+            return;
+        }
+        // name sorts by creation order, which is delivery order
+        File file =
+                new File(
+                        dir,
+                        String.format(
+                                Locale.US,
+                                "batch_%013d_%04d.json.gz",
+                                System.currentTimeMillis(),
+                                sequence++ % 10_000));
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(body);
+        } catch (IOException ex) {
+            file.delete();
+            listener.onFailed("spool: " + ex.getMessage());
+            return;
+        }
+        trimSpool();
+    }
+
+    private void trimSpool() {
+        File[] files = spooled();
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        for (int i = 0; i < files.length && total > config.maxSpoolBytes; i++) {
+            total -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    private void deliverSpool() {
+        long now = System.currentTimeMillis();
+        if (now < nextAttemptMs) {
+            return;
+        }
+        int delivered = 0;
+        int bytes = 0;
+        for (File file : spooled()) {
+            int status;
+            byte[] body;
+            try {
+                body = Files.readAllBytes(file.toPath());
+                status = post(body);
+            } catch (IOException ex) {
+                scheduleRetry("upload: " + ex.getMessage());
+                break;
+            }
+            if (status / 100 == 2) {
+                file.delete();
+                delivered++;
+                bytes += body.length;
+                backoffMs = 0;
+            } else if (status / 100 == 4 && status != 408 && status != 429) {
+                file.delete();
+                listener.onFailed("rejected with HTTP " + status + ", dropped " + file.getName());
+            } else {
+                scheduleRetry("HTTP " + status);
+                break;
+            }
+        }
+        if (delivered > 0) {
+            listener.onDelivered(delivered, bytes);
+        }
+    }
+
+    private void scheduleRetry(String reason) {
+        backoffMs = backoffMs == 0 ? MIN_BACKOFF_MS : Math.min(MAX_BACKOFF_MS, backoffMs * 2);
+        // jitter so a fleet coming back online does not retry in lockstep
+        long delay = backoffMs / 2 + ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1);
+        nextAttemptMs = System.currentTimeMillis() + delay;
+        schedule(this::deliverSpool, delay);
+        listener.onFailed(reason + ", retry in " + delay / 1000 + " s");
+    }
+
+    /** Null once released; the spool is picked up again by the next uploader. */
+    private ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        if (worker.isShutdown()) {
+            return null;
+        }
+        return worker.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private int post(byte[] body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(config.endpoint).openConnection();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setDoOutput(true);
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setRequestProperty("Content-Encoding", "gzip");
+            conn.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body);
+            }
+            int status = conn.getResponseCode();
+            InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+            if (in != null) {
+                in.close();
+            }
+            return status;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private File[] spooled() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("batch_"));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        return files;
+    }
+
+    private String encodeBatch(List<SceneResult> results) throws JSONException {
+        JSONArray items = new JSONArray();
+        for (SceneResult result : results) {
+            JSONObject item = new JSONObject();
+            item.put("ts", result.getTimestampMs());
+            SceneClassification scene = result.getScene();
+            if (scene != null) {
+                item.put("scene", scene.getScene());
+                item.put("noiseMode", scene.getNoiseMode());
+            }
+            JSONArray top = new JSONArray();
+            List<Prediction> predictions = result.getPredictions();
+            for (int i = 0; i < Math.min(config.topK, predictions.size()); i++) {
+                Prediction p = predictions.get(i);
+                top.put(new JSONObject().put("label", p.getLabel()).put("p", p.getConfidence()));
+            }
+            item.put("top", top);
+            float[] probs = result.getProbabilities();
+            if (probs != null) {
+                item.put("probs", quantize(probs));
+            }
+            items.put(item);
+        }
+        return new JSONObject().put("version", 1).put("results", items).toString();
+    }
+
+    /** One unsigned byte per label (p * 255), base64; ~0.4% resolution is enough offline. */
+    static String quantize(float[] probs) {
+        byte[] q = new byte[probs.length];
+        for (int i = 0; i < probs.length; i++) {
+            float p = Math.max(0f, Math.min(1f, probs[i]));
+            q[i] = (byte) Math.round(p * 255f);
+        }
+        return Base64.getEncoder().encodeToString(q);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
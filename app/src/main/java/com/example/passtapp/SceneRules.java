@@ -0,0 +1,280 @@
+package com.example.passtapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Scene rules compiled from JSON into flat primitive arrays. A rule matches when all of its
+ * conditions hit; rules are tried in descending priority and the first match names the scene.
+ *
+ * <pre>
+ * {"default": {"scene": "标准降噪", "noiseMode": "STANDARD"},
+ *  "rules": [{"scene": "会议模式", "priority": 100, "noiseMode": "MEETING",
+ *             "all": [{"name": "语音", "labels": ["Speech"], "agg": "max", "threshold": 0.5}]}]}
+ * </pre>
+ *
+ * <p>{@code labels} accepts AudioSet indices, English display names or localized names; an index
+ * outside the model's label count rejects the whole file, like an unknown name. {@code agg} is
+ * {@code max}, {@code mean} or {@code sum}; {@code op} is {@code >=} (default) or {@code <}.
+ */
+final class SceneRules {
+
+    static final int NO_MATCH = -1;
+
+    private static final byte AGG_MAX = 0;
+    private static final byte AGG_MEAN = 1;
+    private static final byte AGG_SUM = 2;
+
+    interface LabelResolver {
+        int resolve(String label);
+    }
+
+    // conditions, in rule order
+    private final int[] condLabelStart;
+    private final int[] condLabelEnd;
+    private final int[] labelIndices;
+    private final byte[] condAgg;
+    private final boolean[] condBelow;
+    private final float[] condThreshold;
+    private final String[] condName;
+    // rules, sorted by priority
+    private final int[] ruleCondStart;
+    private final int[] ruleCondEnd;
+    private final String[] ruleScene;
+    private final String[] ruleNoiseMode;
+    private final String defaultScene;
+    private final String defaultNoiseMode;
+    private final int maxLabelIndex;
+
+    private SceneRules(
+            int[] condLabelStart,
+            int[] condLabelEnd,
+            int[] labelIndices,
+            byte[] condAgg,
+            boolean[] condBelow,
+            float[] condThreshold,
+            String[] condName,
+            int[] ruleCondStart,
+            int[] ruleCondEnd,
+            String[] ruleScene,
+            String[] ruleNoiseMode,
+            String defaultScene,
+            String defaultNoiseMode) {
+        this.condLabelStart = condLabelStart;
+        this.condLabelEnd = condLabelEnd;
+        this.labelIndices = labelIndices;
+        this.condAgg = condAgg;
+        this.condBelow = condBelow;
+        this.condThreshold = condThreshold;
+        this.condName = condName;
+        this.ruleCondStart = ruleCondStart;
+        this.ruleCondEnd = ruleCondEnd;
+        this.ruleScene = ruleScene;
+        this.ruleNoiseMode = ruleNoiseMode;
+        this.defaultScene = defaultScene;
+        this.defaultNoiseMode = defaultNoiseMode;
+        int max = -1;
+        for (int idx : labelIndices) {
+            max = Math.max(max, idx);
+        }
+        this.maxLabelIndex = max;
+    }
+
+    static SceneRules compile(String json, int labelCount, LabelResolver resolver)
+            throws JSONException {
+        JSONObject root = new JSONObject(json);
+        JSONObject fallback = root.optJSONObject("default");
+        String defaultScene = "标准降噪";
+        String defaultMode = "STANDARD";
+        if (fallback != null) {
+            defaultScene = fallback.optString("scene", defaultScene);
+            defaultMode = fallback.optString("noiseMode", defaultMode);
+        }
+
+        JSONArray rules = root.getJSONArray("rules");
+        Integer[] order = new Integer[rules.length()];
+        int[] priorities = new int[rules.length()];
+        for (int r = 0; r < rules.length(); r++) {
+            order[r] = r;
+            priorities[r] = rules.getJSONObject(r).optInt("priority", 0);
+        }
+        // stable: equal priorities keep file order
+        Arrays.sort(order, (a, b) -> Integer.compare(priorities[b], priorities[a]));
+
+        List<int[]> condLabels = new ArrayList<>();
+        List<Byte> aggs = new ArrayList<>();
+        List<Boolean> below = new ArrayList<>();
+        List<Float> thresholds = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int[] ruleCondStart = new int[order.length];
+        int[] ruleCondEnd = new int[order.length];
+        String[] ruleScene = new String[order.length];
+        String[] ruleNoiseMode = new String[order.length];
+        for (int r = 0; r < order.length; r++) {
+            JSONObject rule = rules.getJSONObject(order[r]);
+            ruleScene[r] = rule.getString("scene");
+            ruleNoiseMode[r] = rule.optString("noiseMode", defaultMode);
+            JSONArray conditions = rule.getJSONArray("all");
+            ruleCondStart[r] = names.size();
+            for (int c = 0; c < conditions.length(); c++) {
+                JSONObject cond = conditions.getJSONObject(c);
+                JSONArray labels = cond.getJSONArray("labels");
+                int[] resolved = new int[labels.length()];
+                for (int l = 0; l < labels.length(); l++) {
+                    Object token = labels.get(l);
+                    int idx =
+                            token instanceof Number
+                                    ? ((Number) token).intValue()
+                                    : resolver.resolve(String.valueOf(token));
+                    if (token instanceof Number && (idx < 0 || idx >= labelCount)) {
+                        throw new JSONException(
+                                "Label index "
+                                        + token
+                                        + " out of range 0.."
+                                        + (labelCount - 1)
+                                        + " in rule "
+                                        + ruleScene[r]);
+                    }
+                    if (idx < 0 || idx >= labelCount) {
+                        throw new JSONException(
+                                "Unknown label '" + token + "' in rule " + ruleScene[r]);
+                    }
+                    resolved[l] = idx;
+                }
+                condLabels.add(resolved);
+                aggs.add(parseAgg(cond.optString("agg", "max")));
+                below.add("<".equals(cond.optString("op", ">=")));
+                thresholds.add((float) cond.getDouble("threshold"));
+                names.add(cond.optString("name", "cond" + names.size()));
+            }
+            ruleCondEnd[r] = names.size();
+        }
+
+        int conds = names.size();
+        int[] condLabelStart = new int[conds];
+        int[] condLabelEnd = new int[conds];
+        int total = 0;
+        for (int[] l : condLabels) {
+            total += l.length;
+        }
+        int[] flat = new int[total];
+        byte[] condAgg = new byte[conds];
+        boolean[] condBelow = new boolean[conds];
+        float[] condThreshold = new float[conds];
+        int pos = 0;
+        for (int c = 0; c < conds; c++) {
+            int[] l = condLabels.get(c);
+            condLabelStart[c] = pos;
+            System.arraycopy(l, 0, flat, pos, l.length);
+            pos += l.length;
+            condLabelEnd[c] = pos;
+            condAgg[c] = aggs.get(c);
+            condBelow[c] = below.get(c);
+            condThreshold[c] = thresholds.get(c);
+        }
+        return new SceneRules(
+                condLabelStart,
+                condLabelEnd,
+                flat,
+                condAgg,
+                condBelow,
+                condThreshold,
+                names.toArray(new String[0]),
+                ruleCondStart,
+                ruleCondEnd,
+                ruleScene,
+                ruleNoiseMode,
+                defaultScene,
+                defaultMode);
+    }
+
+    int conditionCount() {
+        return condName.length;
+    }
+
+    int ruleCount() {
+        return ruleScene.length;
+    }
+
+    /** Conditions of {@code rule} are {@code [ruleConditionStart, ruleConditionEnd)}. */
+    int ruleConditionStart(int rule) {
+        return ruleCondStart[rule];
+    }
+
+    int ruleConditionEnd(int rule) {
+        return ruleCondEnd[rule];
+    }
+
+    /** Highest label index any condition reads; probability vectors must be longer than this. */
+    int maxLabelIndex() {
+        return maxLabelIndex;
+    }
+
+    /**
+     * Fills {@code values} (length {@link #conditionCount}) with each condition's aggregate and
+     * returns the index of the first matching rule, or {@link #NO_MATCH}. Does not allocate.
+     */
+    int evaluate(float[] probs, float[] values) {
+        for (int c = 0; c < condName.length; c++) {
+            int start = condLabelStart[c];
+            int end = condLabelEnd[c];
+            float acc = 0f;
+            for (int i = start; i < end; i++) {
+                int idx = labelIndices[i];
+                float p = idx < probs.length ? probs[idx] : 0f;
+                acc = condAgg[c] == AGG_MAX ? Math.max(acc, p) : acc + p;
+            }
+            values[c] = condAgg[c] == AGG_MEAN && end > start ? acc / (end - start) : acc;
+        }
+        for (int r = 0; r < ruleScene.length; r++) {
+            boolean all = true;
+            for (int c = ruleCondStart[r]; c < ruleCondEnd[r] && all; c++) {
+                all = hit(c, values[c]);
+            }
+            if (all) {
+                return r;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    boolean hit(int condition, float value) {
+        return condBelow[condition]
+                ? value < condThreshold[condition]
+                : value >= condThreshold[condition];
+    }
+
+    String sceneOf(int rule) {
+        return rule == NO_MATCH ? defaultScene : ruleScene[rule];
+    }
+
+    String noiseModeOf(int rule) {
+        return rule == NO_MATCH ? defaultNoiseMode : ruleNoiseMode[rule];
+    }
+
+    String conditionName(int condition) {
+        return condName[condition];
+    }
+
+    float threshold(int condition) {
+        return condThreshold[condition];
+    }
+
+    private static byte parseAgg(String agg) throws JSONException {
+        switch (agg.toLowerCase(Locale.US)) {
+            case "max":
+                return AGG_MAX;
+            case "mean":
+                return AGG_MEAN;
+            case "sum":
+                return AGG_SUM;
+            default:
+                throw new JSONException("Unknown aggregation: " + agg);
+        }
+    }
+}
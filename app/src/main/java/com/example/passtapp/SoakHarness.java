@@ -0,0 +1,428 @@
+package com.example.passtapp;
+
+import android.content.Context;
+import android.os.Debug;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Long-running leak check. Drives {@link AudioSceneAnalyzer} from an unpaced {@link
+ * SyntheticSource} (so audio arrives as fast as the pipeline takes it) through repeated cycles of
+ * start, pause, play raw/denoised, save, resume and stop, with a long continuous stream every few
+ * cycles and a full release and re-create of the analyzer every few more.
+ *
+ * <p>After each cycle the heap is collected and Java heap, native heap, thread count (every thread
+ * in {@code /proc/self/task}, PyTorch's included), open descriptors and the cycle's GC time (the
+ * harness's own forced collections excluded) are sampled. Once the warm-up share of the run is
+ * over, each metric gets a least-squares line against wall time; the run fails when its slope, per
+ * hour, exceeds that metric's limit. Limits are rates, so they mean the same for any run length;
+ * runs much shorter than an hour magnify one-off steps. The report is JSON.
+ *
+ * <p>The harness owns its analyzers. They keep their timeline and logits cache under {@code
+ * cache/soak}, so a run leaves the user's timeline untouched.
+ */
+final class SoakHarness {
+
+    private static final int SOURCE_RATE = 48_000;
+    private static final long SETTLE_MS = 500L;
+    private static final long PLAY_MS = 200L;
+
+    /** Run length, cycle shape and growth limits. */
+    static final class Config {
+        final long durationMs;
+        final long streamMs;
+        final int continuousEvery;
+        final long continuousMs;
+        final int recreateEvery;
+        final double warmupFraction;
+        final long maxHeapBytesPerHour;
+        final long maxNativeBytesPerHour;
+        final int maxThreadsPerHour;
+        final int maxFdsPerHour;
+        final long maxGcMsPerHour;
+
+        Config(
+                long durationMs,
+                long streamMs,
+                int continuousEvery,
+                long continuousMs,
+                int recreateEvery,
+                double warmupFraction,
+                long maxHeapBytesPerHour,
+                long maxNativeBytesPerHour,
+                int maxThreadsPerHour,
+                int maxFdsPerHour,
+                long maxGcMsPerHour) {
+            this.durationMs = durationMs;
+            this.streamMs = streamMs;
+            this.continuousEvery = continuousEvery;
+            this.continuousMs = continuousMs;
+            this.recreateEvery = recreateEvery;
+            this.warmupFraction = warmupFraction;
+            this.maxHeapBytesPerHour = maxHeapBytesPerHour;
+            this.maxNativeBytesPerHour = maxNativeBytesPerHour;
+            this.maxThreadsPerHour = maxThreadsPerHour;
+            this.maxFdsPerHour = maxFdsPerHour;
+            this.maxGcMsPerHour = maxGcMsPerHour;
+        }
+
+        /**
+         * 3 s cycles, a 30 s stream every 10th, a re-create every 25th; the first 20% is
+         * warm-up. Allows growth per hour of 8 MB heap, 16 MB native, 2 threads, 4 fds and 50 ms
+         * of per-cycle GC time.
+         */
+        static Config forDuration(long durationMs) {
+            return new Config(
+                    durationMs,
+                    3_000L,
+                    10,
+                    30_000L,
+                    25,
+                    0.2,
+                    8L * 1024 * 1024,
+                    16L * 1024 * 1024,
+                    2,
+                    4,
+                    50L);
+        }
+    }
+
+    interface Listener {
+        void onProgress(String status);
+
+        void onFinished(File report, boolean passed);
+
+        void onFailed(Exception error);
+    }
+
+    private static final class Sample {
+        final long elapsedMs;
+        final int cycle;
+        final long javaHeap;
+        final long nativeHeap;
+        final int threads;
+        final int fds;
+        final long gcCount;
+        /** Cumulative GC time after the harness's forced collections. */
+        final long gcTimeMs;
+        /** GC time during the cycle itself, forced collections excluded. */
+        final long cycleGcMs;
+
+        Sample(
+                long elapsedMs,
+                int cycle,
+                long javaHeap,
+                long nativeHeap,
+                int threads,
+                int fds,
+                long gcCount,
+                long gcTimeMs,
+                long cycleGcMs) {
+            this.elapsedMs = elapsedMs;
+            this.cycle = cycle;
+            this.javaHeap = javaHeap;
+            this.nativeHeap = nativeHeap;
+            this.threads = threads;
+            this.fds = fds;
+            this.gcCount = gcCount;
+            this.gcTimeMs = gcTimeMs;
+            this.cycleGcMs = cycleGcMs;
+        }
+    }
+
+    private final Context context;
+    private final Config config;
+    private final File reportFile;
+    private final List<Sample> samples = new ArrayList<>();
+    private final AtomicLong results = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private AudioSceneAnalyzer analyzer;
+    private int recreations;
+    private int saves;
+
+    SoakHarness(Context context, Config config, File reportFile) {
+        this.context = context.getApplicationContext();
+        this.config = config;
+        this.reportFile = reportFile;
+    }
+
+    File getReportFile() {
+        return reportFile;
+    }
+
+    /** Runs on a new daemon thread; the listener is called from that thread. */
+    void start(Listener listener) {
+        Thread thread =
+                new Thread(
+                        () -> {
+                            try {
+                                boolean passed = run(listener);
+                                listener.onFinished(reportFile, passed);
+                            } catch (Exception ex) {
+                                writeFailure(ex);
+                                listener.onFailed(ex);
+                            }
+                        },
+                        "SoakHarness");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Replaces the report with {@code {timestampMs, error}} so pollers stop waiting. */
+    void writeFailure(Exception error) {
+        try {
+            JSONObject report = new JSONObject();
+            report.put("timestampMs", System.currentTimeMillis());
+            report.put("passed", false);
+            report.put(
+                    "error",
+                    error.getLocalizedMessage() != null
+                            ? error.getLocalizedMessage()
+                            : error.toString());
+            writeJson(reportFile, report);
+        } catch (IOException | JSONException ignored) {
+            // the script's deadline covers this
+        }
+    }
+
+    /** Blocks for {@code durationMs} and writes the report; true when no metric grew too much. */
+    boolean run(Listener listener) throws IOException, JSONException, InterruptedException {
+        long startMs = System.currentTimeMillis();
+        long lastGcMs = readRuntimeStat("art.gc.gc-time");
+        analyzer = createAnalyzer();
+        int cycle = 0;
+        try {
+            while (System.currentTimeMillis() - startMs < config.durationMs) {
+                cycle++;
+                boolean continuous =
+                        config.continuousEvery > 0 && cycle % config.continuousEvery == 0;
+                runCycle(continuous ? config.continuousMs : config.streamMs);
+                if (config.recreateEvery > 0 && cycle % config.recreateEvery == 0) {
+                    analyzer.release();
+                    analyzer = createAnalyzer();
+                    recreations++;
+                }
+                Sample sample = sample(startMs, cycle, lastGcMs);
+                lastGcMs = sample.gcTimeMs;
+                samples.add(sample);
+                if (listener != null && cycle % 10 == 0) {
+                    listener.onProgress(
+                            "耐久测试: 第 "
+                                    + cycle
+                                    + " 轮, 堆 "
+                                    + sample.javaHeap / (1024 * 1024)
+                                    + " MB, 线程 "
+                                    + sample.threads);
+                }
+            }
+        } finally {
+            analyzer.release();
+            analyzer = null;
+        }
+        return writeReport(startMs, cycle);
+    }
+
+    private AudioSceneAnalyzer createAnalyzer() {
+        AudioSceneAnalyzer created =
+                new AudioSceneAnalyzer(context, new File(context.getCacheDir(), "soak"));
+        created.setSourceFactory(
+                () ->
+                        new SyntheticSource(
+                                SOURCE_RATE, 440f, 0.1f, 0.05f, -1, false, recreations + 1L));
+        return created;
+    }
+
+    private void runCycle(long streamMs) throws InterruptedException {
+        analyzer.startStreaming(
+                result -> results.incrementAndGet(),
+                null,
+                message -> errors.incrementAndGet(),
+                null);
+        Thread.sleep(streamMs);
+        analyzer.pauseStreaming();
+        Thread.sleep(PLAY_MS);
+        analyzer.playRawBuffer();
+        Thread.sleep(PLAY_MS);
+        analyzer.playProcessedBuffer();
+        Thread.sleep(PLAY_MS);
+        analyzer.stopPlayback();
+        AudioSceneAnalyzer.SaveResult saved = analyzer.saveCurrentBuffers();
+        if (saved.success) {
+            saves++;
+            // only the write path matters here; keep storage flat
+            new File(saved.rawPath).delete();
+            new File(saved.processedPath).delete();
+        }
+        analyzer.resumeStreaming();
+        Thread.sleep(streamMs / 2);
+        analyzer.stopStreaming();
+    }
+
+    private Sample sample(long startMs, int cycle, long lastGcMs) throws InterruptedException {
+        // let the loop and the in-flight inference finish, then measure live objects only
+        Thread.sleep(SETTLE_MS);
+        // read before forcing: the cycle's GC time must not include our own collections
+        long cycleEndGcMs = readRuntimeStat("art.gc.gc-time");
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        System.runFinalization();
+        runtime.gc();
+        long gcTimeMs = readRuntimeStat("art.gc.gc-time");
+        return new Sample(
+                System.currentTimeMillis() - startMs,
+                cycle,
+                runtime.totalMemory() - runtime.freeMemory(),
+                Debug.getNativeHeapAllocatedSize(),
+                countEntries("/proc/self/task", Thread.activeCount()),
+                countEntries("/proc/self/fd", -1),
+                readRuntimeStat("art.gc.gc-count"),
+                gcTimeMs,
+                cycleEndGcMs >= 0 && lastGcMs >= 0 ? cycleEndGcMs - lastGcMs : -1);
+    }
+
+    private boolean writeReport(long startMs, int cycles) throws IOException, JSONException {
+        int from = (int) Math.min(samples.size() - 1, samples.size() * config.warmupFraction);
+        JSONObject trends = new JSONObject();
+        JSONArray failures = new JSONArray();
+        checkTrend(
+                trends,
+                failures,
+                "javaHeapBytes",
+                from,
+                s -> s.javaHeap,
+                config.maxHeapBytesPerHour);
+        checkTrend(
+                trends,
+                failures,
+                "nativeHeapBytes",
+                from,
+                s -> s.nativeHeap,
+                config.maxNativeBytesPerHour);
+        checkTrend(trends, failures, "threads", from, s -> s.threads, config.maxThreadsPerHour);
+        checkTrend(trends, failures, "fds", from, s -> s.fds, config.maxFdsPerHour);
+        checkTrend(
+                trends, failures, "gcMsPerCycle", from, s -> s.cycleGcMs, config.maxGcMsPerHour);
+
+        JSONArray series = new JSONArray();
+        for (Sample s : samples) {
+            series.put(
+                    new JSONObject()
+                            .put("t", s.elapsedMs)
+                            .put("cycle", s.cycle)
+                            .put("javaHeap", s.javaHeap)
+                            .put("nativeHeap", s.nativeHeap)
+                            .put("threads", s.threads)
+                            .put("fds", s.fds)
+                            .put("gcCount", s.gcCount)
+                            .put("gcTimeMs", s.gcTimeMs)
+                            .put("cycleGcMs", s.cycleGcMs));
+        }
+        boolean passed = failures.length() == 0;
+        JSONObject report = new JSONObject();
+        report.put("timestampMs", System.currentTimeMillis());
+        report.put("durationMs", System.currentTimeMillis() - startMs);
+        report.put("cycles", cycles);
+        report.put("recreations", recreations);
+        report.put("results", results.get());
+        report.put("errors", errors.get());
+        report.put("saves", saves);
+        report.put("warmupSamples", from);
+        report.put("passed", passed);
+        report.put("failures", failures);
+        report.put("trends", trends);
+        report.put("samples", series);
+        writeJson(reportFile, report);
+        return passed;
+    }
+
+    /**
+     * Fits a line to one metric over samples {@code from..end} against wall time; its slope per
+     * hour is compared with {@code limitPerHour}. Metrics the device does not expose (-1) are
+     * skipped.
+     */
+    private void checkTrend(
+            JSONObject trends,
+            JSONArray failures,
+            String name,
+            int from,
+            ToDoubleFunction<Sample> metric,
+            long limitPerHour)
+            throws JSONException {
+        int n = samples.size() - from;
+        if (n < 3 || metric.applyAsDouble(samples.get(from)) < 0) {
+            return;
+        }
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        for (int i = from; i < samples.size(); i++) {
+            double x = samples.get(i).elapsedMs;
+            double y = metric.applyAsDouble(samples.get(i));
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+        }
+        double denom = n * sumXX - sumX * sumX;
+        double slopePerMs = denom != 0 ? (n * sumXY - sumX * sumY) / denom : 0;
+        double spanMs = samples.get(samples.size() - 1).elapsedMs - samples.get(from).elapsedMs;
+        double perHour = slopePerMs * 3_600_000.0;
+        trends.put(
+                name,
+                new JSONObject()
+                        .put("first", metric.applyAsDouble(samples.get(from)))
+                        .put("last", metric.applyAsDouble(samples.get(samples.size() - 1)))
+                        .put("perHour", perHour)
+                        .put("growth", slopePerMs * spanMs)
+                        .put("limitPerHour", limitPerHour));
+        if (perHour > limitPerHour) {
+            failures.put(
+                    name + " grew " + Math.round(perHour) + "/h (limit " + limitPerHour + "/h)");
+        }
+    }
+
+    /** Entries in a /proc directory, or {@code fallback} where it cannot be listed. */
+    private static int countEntries(String path, int fallback) {
+        String[] entries = new File(path).list();
+        return entries != null ? entries.length : fallback;
+    }
+
+    /** ART runtime counter ({@code art.gc.*}) as a long, or -1 if unavailable. */
+    private static long readRuntimeStat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static void writeJson(File file, JSONObject json) throws IOException, JSONException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        // write then rename so pollers never see a half-written report
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(json.toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot write " + file);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.passtapp;
+
+/** Sleeps so that {@code delivered} samples never run ahead of wall-clock time. */
+final class SourcePacer {
+
+    /** Lagging more than this (a pause, a long GC) rebases the clock instead of bursting. */
+    private static final long MAX_LAG_NS = 250_000_000L;
+
+    private SourcePacer() {}
+
+    /** Returns the start time to use for the next call, rebased if the caller fell behind. */
+    static long pace(long startNs, long delivered, int sampleRate) {
+        long dueNs = startNs + delivered * 1_000_000_000L / sampleRate;
+        long waitNs = dueNs - System.nanoTime();
+        if (waitNs < -MAX_LAG_NS) {
+            return startNs - waitNs;
+        }
+        if (waitNs <= 0) {
+            return startNs;
+        }
+        try {
+            Thread.sleep(waitNs / 1_000_000L, (int) (waitNs % 1_000_000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return startNs;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.passtapp;
+
+import java.util.Random;
+
+/**
+ * Generated test signal: a sine tone plus white noise, either of which may be zero (silence).
+ * Deterministic for a given seed so runs are reproducible.
+ */
+final class SyntheticSource implements PcmSource {
+
+    private final int sampleRate;
+    private final float toneHz;
+    private final float toneAmplitude;
+    private final float noiseAmplitude;
+    private final long totalSamples;
+    private final boolean paced;
+    private final long seed;
+    private Random random;
+    private double phase;
+    private long startNs;
+    private long delivered;
+
+    /**
+     * @param totalSamples stream length, or a negative value for an endless stream
+     */
+    SyntheticSource(
+            int sampleRate,
+            float toneHz,
+            float toneAmplitude,
+            float noiseAmplitude,
+            long totalSamples,
+            boolean paced,
+            long seed) {
+        this.sampleRate = sampleRate;
+        this.toneHz = toneHz;
+        this.toneAmplitude = toneAmplitude;
+        this.noiseAmplitude = noiseAmplitude;
+        this.totalSamples = totalSamples;
+        this.paced = paced;
+        this.seed = seed;
+    }
+
+    static SyntheticSource tone(int sampleRate, float hz, float amplitude, boolean paced) {
+        return new SyntheticSource(sampleRate, hz, amplitude, 0f, -1, paced, 0);
+    }
+
+    static SyntheticSource noise(int sampleRate, float amplitude, boolean paced) {
+        return new SyntheticSource(sampleRate, 0f, 0f, amplitude, -1, paced, 0);
+    }
+
+    static SyntheticSource silence(int sampleRate, boolean paced) {
+        return new SyntheticSource(sampleRate, 0f, 0f, 0f, -1, paced, 0);
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void start() {
+        random = new Random(seed);
+        phase = 0;
+        delivered = 0;
+        startNs = System.nanoTime();
+    }
+
+    @Override
+    public int read(float[] buffer, int offset, int length) {
+        int n = length;
+        if (totalSamples >= 0) {
+            if (delivered >= totalSamples) {
+                return END_OF_STREAM;
+            }
+            n = (int) Math.min(length, totalSamples - delivered);
+        }
+        double step = 2 * Math.PI * toneHz / sampleRate;
+        for (int i = 0; i < n; i++) {
+            float v = toneAmplitude * (float) Math.sin(phase);
+            if (noiseAmplitude > 0f) {
+                v += noiseAmplitude * (random.nextFloat() * 2f - 1f);
+            }
+            buffer[offset + i] = v;
+            phase += step;
+        }
+        // keep the phase bounded so long runs do not lose precision
+        phase %= 2 * Math.PI;
+        delivered += n;
+        if (paced) {
+            startNs = SourcePacer.pace(startNs, delivered, sampleRate);
+        }
+        return n;
+    }
+
+    @Override
+    public String describe() {
+        return String.format(
+                java.util.Locale.US,
+                "合成信号 %.0f Hz/%.2f + 噪声 %.2f%s",
+                toneHz,
+                toneAmplitude,
+                noiseAmplitude,
+                paced ? "" : " (不限速)");
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.passtapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Append-only probability timeline. Each {@link SceneResult} becomes one fixed-size record
+ * (timestamp, scene name, all label probabilities) in a memory-mapped segment file; segments roll
+ * once they reach {@code segmentBytes} and the oldest are deleted beyond {@code maxSegments}.
+ *
+ * <p>Range queries binary-search the timestamp column and read only the requested label's column,
+ * so whole records are never decoded.
+ */
+final class TimelineStore {
+
+    private static final int MAGIC = 0x5053544c; // "PSTL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int OFFSET_LABEL_COUNT = 8;
+    private static final int OFFSET_RECORD_SIZE = 12;
+    private static final int OFFSET_CAPACITY = 16;
+    private static final int OFFSET_RECORD_COUNT = 20;
+    private static final int SCENE_BYTES = 24;
+    private static final int OFFSET_PROBS = 8 + SCENE_BYTES;
+    private static final String PREFIX = "timeline_";
+    private static final String SUFFIX = ".bin";
+
+    private final File dir;
+    private final long segmentBytes;
+    private final int maxSegments;
+
+    private File currentFile;
+    private RandomAccessFile activeFile;
+    private MappedByteBuffer active;
+    private int activeLabels;
+    private int activeRecordSize;
+    private int activeCapacity;
+    private int activeCount;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    TimelineStore(File dir, long segmentBytes, int maxSegments) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+    }
+
+    /** Appends one record; timestamps are clamped so they never go backwards within the store. */
+    synchronized void append(long timestampMs, String scene, float[] probs) throws IOException {
+        if (probs == null || probs.length == 0) {
+            return;
+        }
+        if (active == null && !reopenLatest(probs.length)) {
+            rollSegment(timestampMs, probs.length);
+        } else if (activeCount >= activeCapacity || activeLabels != probs.length) {
+            rollSegment(timestampMs, probs.length);
+        }
+        long ts = Math.max(timestampMs, lastTimestamp);
+        int base = HEADER_SIZE + activeCount * activeRecordSize;
+        active.putLong(base, ts);
+        byte[] sceneBytes = scene != null ? scene.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int sceneLen = Math.min(sceneBytes.length, SCENE_BYTES);
+        // never cut a multi-byte character in half
+        while (sceneLen < sceneBytes.length
+                && sceneLen > 0
+                && (sceneBytes[sceneLen] & 0xC0) == 0x80) {
+            sceneLen--;
+        }
+        for (int i = 0; i < SCENE_BYTES; i++) {
+            active.put(base + 8 + i, i < sceneLen ? sceneBytes[i] : 0);
+        }
+        int p = base + OFFSET_PROBS;
+        for (float prob : probs) {
+            active.putFloat(p, prob);
+            p += 4;
+        }
+        activeCount++;
+        // Publish the record only after its payload is written.
+        active.putInt(OFFSET_RECORD_COUNT, activeCount);
+        lastTimestamp = ts;
+    }
+
+    /**
+     * Downsamples label {@code labelIndex} over [{@code fromMs}, {@code toMs}] into {@code buckets}
+     * equal-width time buckets. Buckets without records have count 0 and NaN max/mean.
+     */
+    synchronized Series querySeries(int labelIndex, long fromMs, long toMs, int buckets)
+            throws IOException {
+        if (buckets <= 0 || toMs < fromMs) {
+            throw new IllegalArgumentException("Invalid range/buckets");
+        }
+        Series series = new Series(fromMs, toMs, buckets);
+        double span = (double) (toMs - fromMs + 1);
+        double[] sums = new double[buckets];
+        for (File file : listSegments()) {
+            MappedByteBuffer buf = file.equals(currentFile) ? active : mapReadOnly(file);
+            if (buf == null) {
+                continue;
+            }
+            int labels = buf.getInt(OFFSET_LABEL_COUNT);
+            int recordSize = buf.getInt(OFFSET_RECORD_SIZE);
+            int count = buf.getInt(OFFSET_RECORD_COUNT);
+            if (labelIndex < 0 || labelIndex >= labels || count == 0) {
+                continue;
+            }
+            if (timestampAt(buf, recordSize, count - 1) < fromMs
+                    || timestampAt(buf, recordSize, 0) > toMs) {
+                continue;
+            }
+            int labelOffset = OFFSET_PROBS + labelIndex * 4;
+            for (int i = lowerBound(buf, recordSize, count, fromMs); i < count; i++) {
+                int base = HEADER_SIZE + i * recordSize;
+                long ts = buf.getLong(base);
+                if (ts > toMs) {
+                    break;
+                }
+                int b = (int) Math.min(buckets - 1, (long) ((ts - fromMs) * buckets / span));
+                float v = buf.getFloat(base + labelOffset);
+                if (series.count[b] == 0 || v > series.max[b]) {
+                    series.max[b] = v;
+                }
+                sums[b] += v;
+                series.count[b]++;
+            }
+        }
+        for (int b = 0; b < buckets; b++) {
+            if (series.count[b] > 0) {
+                series.mean[b] = (float) (sums[b] / series.count[b]);
+            } else {
+                series.max[b] = Float.NaN;
+                series.mean[b] = Float.NaN;
+            }
+        }
+        return series;
+    }
+
+    /** Returns the scene name of every record in [{@code fromMs}, {@code toMs}], oldest first. */
+    synchronized List<SceneEntry> queryScenes(long fromMs, long toMs, int maxEntries)
+            throws IOException {
+        List<SceneEntry> out = new ArrayList<>();
+        byte[] scratch = new byte[SCENE_BYTES];
+        for (File file : listSegments()) {
+            MappedByteBuffer buf = file.equals(currentFile) ? active : mapReadOnly(file);
+            if (buf == null) {
+                continue;
+            }
+            int recordSize = buf.getInt(OFFSET_RECORD_SIZE);
+            int count = buf.getInt(OFFSET_RECORD_COUNT);
+            for (int i = lowerBound(buf, recordSize, count, fromMs);
+                    i < count && out.size() < maxEntries;
+                    i++) {
+                int base = HEADER_SIZE + i * recordSize;
+                long ts = buf.getLong(base);
+                if (ts > toMs) {
+                    break;
+                }
+                int len = 0;
+                for (; len < SCENE_BYTES; len++) {
+                    byte c = buf.get(base + 8 + len);
+                    if (c == 0) {
+                        break;
+                    }
+                    scratch[len] = c;
+                }
+                out.add(new SceneEntry(ts, new String(scratch, 0, len, StandardCharsets.UTF_8)));
+            }
+        }
+        return out;
+    }
+
+    synchronized void close() {
+        if (active != null) {
+            // flush the tail now rather than whenever the kernel gets to it
+            active.force();
+        }
+        active = null;
+        currentFile = null;
+        if (activeFile != null) {
+            try {
+                activeFile.close();
+            } catch (IOException ignored) {
+                // ignore close failure
+            }
+            activeFile = null;
+        }
+    }
+
+    /** Continues the newest segment after a restart instead of leaving its tail unused. */
+    private boolean reopenLatest(int labels) throws IOException {
+        File[] segments = listSegments();
+        if (segments.length == 0) {
+            return false;
+        }
+        File file = segments[segments.length - 1];
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        boolean keep = false;
+        try {
+            if (raf.length() < HEADER_SIZE) {
+                return false;
+            }
+            MappedByteBuffer buf =
+                    raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            int count = buf.getInt(OFFSET_RECORD_COUNT);
+            int capacity = buf.getInt(OFFSET_CAPACITY);
+            int recordSize = buf.getInt(OFFSET_RECORD_SIZE);
+            if (buf.getInt(0) != MAGIC
+                    || buf.getInt(4) != VERSION
+                    || buf.getInt(OFFSET_LABEL_COUNT) != labels
+                    || count >= capacity
+                    || HEADER_SIZE + (long) capacity * recordSize > raf.length()) {
+                return false;
+            }
+            activeFile = raf;
+            active = buf;
+            currentFile = file;
+            activeLabels = labels;
+            activeRecordSize = recordSize;
+            activeCapacity = capacity;
+            activeCount = count;
+            if (count > 0) {
+                lastTimestamp = Math.max(lastTimestamp, timestampAt(buf, recordSize, count - 1));
+            }
+            keep = true;
+            return true;
+        } finally {
+            if (!keep) {
+                raf.close();
+            }
+        }
+    }
+
+    private void rollSegment(long timestampMs, int labels) throws IOException {
+        close();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        int recordSize = OFFSET_PROBS + labels * 4;
+        int capacity = (int) Math.max(1, (segmentBytes - HEADER_SIZE) / recordSize);
+        File file = newSegmentFile(timestampMs);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        MappedByteBuffer buf =
+                raf.getChannel()
+                        .map(
+                                FileChannel.MapMode.READ_WRITE,
+                                0,
+                                HEADER_SIZE + (long) capacity * recordSize);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, VERSION);
+        buf.putInt(OFFSET_LABEL_COUNT, labels);
+        buf.putInt(OFFSET_RECORD_SIZE, recordSize);
+        buf.putInt(OFFSET_CAPACITY, capacity);
+        buf.putInt(OFFSET_RECORD_COUNT, 0);
+        activeFile = raf;
+        active = buf;
+        currentFile = file;
+        activeLabels = labels;
+        activeRecordSize = recordSize;
+        activeCapacity = capacity;
+        activeCount = 0;
+        pruneSegments();
+    }
+
+    /**
+     * Claims a fresh segment name. A sequence suffix keeps two rolls in the same millisecond, or
+     * two stores on one directory, from opening the same file.
+     */
+    private File newSegmentFile(long timestampMs) throws IOException {
+        for (int seq = 0; seq < 10_000; seq++) {
+            File file =
+                    new File(
+                            dir,
+                            String.format(
+                                    Locale.US, "%s%013d_%04d%s", PREFIX, timestampMs, seq, SUFFIX));
+            if (file.createNewFile()) {
+                return file;
+            }
+        }
+        throw new IOException("No free segment name for " + timestampMs + " in " + dir);
+    }
+
+    private void pruneSegments() {
+        File[] segments = listSegments();
+        for (int i = 0; i < segments.length - maxSegments; i++) {
+            // noinspection ResultOfMethodCallIgnored
+            segments[i].delete();
+        }
+    }
+
+    private File[] listSegments() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        // zero-padded start timestamps and sequence numbers make lexical order chronological
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        return files;
+    }
+
+    private static MappedByteBuffer mapReadOnly(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buf =
+                    raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                return null;
+            }
+            return buf;
+        }
+    }
+
+    private static long timestampAt(MappedByteBuffer buf, int recordSize, int index) {
+        return buf.getLong(HEADER_SIZE + index * recordSize);
+    }
+
+    private static int lowerBound(MappedByteBuffer buf, int recordSize, int count, long fromMs) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestampAt(buf, recordSize, mid) < fromMs) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    static final class Series {
+        final long fromMs;
+        final long toMs;
+        final float[] max;
+        final float[] mean;
+        final int[] count;
+
+        Series(long fromMs, long toMs, int buckets) {
+            this.fromMs = fromMs;
+            this.toMs = toMs;
+            this.max = new float[buckets];
+            this.mean = new float[buckets];
+            this.count = new int[buckets];
+        }
+    }
+
+    static final class SceneEntry {
+        final long timestampMs;
+        final String scene;
+
+        SceneEntry(long timestampMs, String scene) {
+            this.timestampMs = timestampMs;
+            this.scene = scene;
+        }
+    }
+}
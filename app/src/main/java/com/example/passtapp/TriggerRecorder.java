@@ -0,0 +1,291 @@
+package com.example.passtapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves short clips around interesting moments. The capture thread feeds every resampled chunk
+ * through {@link #onAudio} into a pre-roll ring; the inference thread feeds results through
+ * {@link #onResult}. When a label crosses its threshold or the scene changes, the audio from
+ * {@code preRollMs} before the triggering window up to now, plus the following post-roll, is handed
+ * to a background writer.
+ *
+ * <p>A result arrives one window plus the inference latency after the sound that caused it, so the
+ * ring holds that much audio on top of the requested pre-roll ({@link #MAX_WINDOW_MS} + {@link
+ * #LATENCY_MARGIN_MS}). If inference ever lags further behind, the clip starts as early as the ring
+ * still reaches.
+ *
+ * <p>A label must fall back below its threshold before it can fire again. Triggers while a clip is
+ * still recording extend its post-roll, triggers within {@code cooldownMs} of the last clip are
+ * dropped, and at most {@code maxEventsPerHour} clips are written. A clip that finds the writer
+ * queue full is dropped and reported through {@link ClipListener#onClipFailed}.
+ *
+ * <p>Labels are copied from the {@link Config} at construction; later {@code addLabel} calls only
+ * affect recorders built afterwards.
+ */
+final class TriggerRecorder {
+
+    private static final int MAX_PENDING_WRITES = 4;
+    private static final long HOUR_MS = 3_600_000L;
+    // longest window a result can cover (the normal 10 s; memory pressure halves it)
+    static final int MAX_WINDOW_MS = 10_000;
+    // queueing plus forward time between a window's last sample and its result
+    static final int LATENCY_MARGIN_MS = 5_000;
+
+    /** What fires a clip and how long it is. */
+    static final class Config {
+        final int preRollMs;
+        final int postRollMs;
+        final long cooldownMs;
+        final int maxEventsPerHour;
+        final boolean onSceneChange;
+        int[] labelIndices = new int[0];
+        float[] thresholds = new float[0];
+
+        Config(
+                int preRollMs,
+                int postRollMs,
+                long cooldownMs,
+                int maxEventsPerHour,
+                boolean onSceneChange) {
+            this.preRollMs = preRollMs;
+            this.postRollMs = postRollMs;
+            this.cooldownMs = cooldownMs;
+            this.maxEventsPerHour = maxEventsPerHour;
+            this.onSceneChange = onSceneChange;
+        }
+
+        Config addLabel(int labelIndex, float threshold) {
+            int n = labelIndices.length;
+            labelIndices = Arrays.copyOf(labelIndices, n + 1);
+            thresholds = Arrays.copyOf(thresholds, n + 1);
+            labelIndices[n] = labelIndex;
+            thresholds[n] = threshold;
+            return this;
+        }
+    }
+
+    /** Display name of a label index, used in trigger reasons. */
+    interface LabelNames {
+        String nameOf(int labelIndex);
+    }
+
+    interface ClipListener {
+        void onClipSaved(File file, String reason);
+
+        void onClipFailed(String reason, Exception error);
+    }
+
+    private final int sampleRate;
+    private final File dir;
+    private final Config config;
+    private final ClipListener listener;
+    private final LabelNames labelNames;
+    private final ExecutorService writer;
+    private final int[] labelIndices;
+    private final float[] thresholds;
+    private final float[] preRoll;
+    private final boolean[] armed;
+    private final ArrayDeque<Long> recentEvents = new ArrayDeque<>();
+    private int preRollPos;
+    private boolean preRollFilled;
+    // wall-clock time of the newest sample in the ring
+    private long preRollEndMs;
+    private String lastScene;
+    private long lastTriggerMs = Long.MIN_VALUE;
+    private volatile WavWriter.Format format = WavWriter.Format.PCM16;
+
+    // clip being assembled, guarded by this
+    private float[] clip;
+    private int clipLength;
+    private int postRollRemaining;
+    private long clipStartMs;
+    private String clipReason;
+
+    TriggerRecorder(
+            int sampleRate,
+            File dir,
+            Config config,
+            LabelNames labelNames,
+            ClipListener listener) {
+        this.sampleRate = sampleRate;
+        this.dir = dir;
+        this.config = config;
+        this.labelNames = labelNames;
+        this.listener = listener;
+        long ringMs = (long) config.preRollMs + MAX_WINDOW_MS + LATENCY_MARGIN_MS;
+        this.preRoll = new float[(int) (ringMs * sampleRate / 1000)];
+        this.labelIndices = config.labelIndices.clone();
+        this.thresholds = config.thresholds.clone();
+        this.armed = new boolean[labelIndices.length];
+        Arrays.fill(armed, true);
+        this.writer =
+                new ThreadPoolExecutor(
+                        1,
+                        1,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(MAX_PENDING_WRITES),
+                        r -> {
+                            Thread t = new Thread(r, "ClipWriter");
+                            t.setDaemon(true);
+                            return t;
+                        });
+    }
+
+    void setFormat(WavWriter.Format format) {
+        if (format != null) {
+            this.format = format;
+        }
+    }
+
+    /** Capture thread: append model-rate samples. */
+    synchronized void onAudio(float[] samples, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            preRoll[preRollPos] = samples[offset + i];
+            preRollPos++;
+            if (preRollPos == preRoll.length) {
+                preRollPos = 0;
+                preRollFilled = true;
+            }
+        }
+        preRollEndMs = System.currentTimeMillis();
+        if (clip == null) {
+            return;
+        }
+        int n = Math.min(length, Math.min(postRollRemaining, clip.length - clipLength));
+        System.arraycopy(samples, offset, clip, clipLength, n);
+        clipLength += n;
+        postRollRemaining -= n;
+        if (postRollRemaining <= 0 || clipLength == clip.length) {
+            finishClip();
+        }
+    }
+
+    /** Inference thread: evaluate triggers against a new result. */
+    synchronized void onResult(SceneResult result) {
+        if (result == null) {
+            return;
+        }
+        String reason = null;
+        String scene = result.getScene() != null ? result.getScene().getScene() : null;
+        if (config.onSceneChange
+                && scene != null
+                && lastScene != null
+                && !scene.equals(lastScene)) {
+            reason = "scene " + lastScene + " -> " + scene;
+        }
+        if (scene != null) {
+            lastScene = scene;
+        }
+        float[] probs = result.getProbabilities();
+        if (probs != null) {
+            for (int i = 0; i < labelIndices.length; i++) {
+                int idx = labelIndices[i];
+                if (idx < 0 || idx >= probs.length) {
+                    continue;
+                }
+                boolean above = probs[idx] >= thresholds[i];
+                if (above && armed[i] && reason == null) {
+                    reason =
+                            String.format(
+                                    Locale.US,
+                                    "%s = %.2f >= %.2f",
+                                    labelNames.nameOf(idx),
+                                    probs[idx],
+                                    thresholds[i]);
+                }
+                // hysteresis: re-arm only once the label has dropped below its threshold
+                armed[i] = !above;
+            }
+        }
+        if (reason != null) {
+            trigger(reason, result.getTimestampMs(), result.getWindowStartMs());
+        }
+    }
+
+    /** Pre-roll ring plus any clip being assembled. */
+    synchronized long getBufferBytes() {
+        return (preRoll.length + (clip != null ? clip.length : 0)) * 4L;
+    }
+
+    void release() {
+        writer.shutdown();
+    }
+
+    private void trigger(String reason, long nowMs, long windowStartMs) {
+        int postRollSamples = (int) ((long) config.postRollMs * sampleRate / 1000);
+        if (clip != null) {
+            // still recording: extend the post-roll instead of starting an overlapping clip
+            postRollRemaining = Math.max(postRollRemaining, postRollSamples);
+            return;
+        }
+        if (lastTriggerMs != Long.MIN_VALUE && nowMs - lastTriggerMs < config.cooldownMs) {
+            return;
+        }
+        while (!recentEvents.isEmpty() && nowMs - recentEvents.peekFirst() >= HOUR_MS) {
+            recentEvents.pollFirst();
+        }
+        if (recentEvents.size() >= config.maxEventsPerHour) {
+            return;
+        }
+        recentEvents.addLast(nowMs);
+        lastTriggerMs = nowMs;
+
+        // from preRollMs before the window that fired, as far back as the ring reaches
+        long wantedMs = Math.max(0L, preRollEndMs - (windowStartMs - config.preRollMs));
+        int stored = preRollFilled ? preRoll.length : preRollPos;
+        int available = (int) Math.min(stored, wantedMs * sampleRate / 1000);
+        // room for the pre-roll, the post-roll and one extension
+        clip = new float[available + postRollSamples * 2];
+        int start = (preRollPos - available + preRoll.length) % preRoll.length;
+        int first = Math.min(available, preRoll.length - start);
+        System.arraycopy(preRoll, start, clip, 0, first);
+        System.arraycopy(preRoll, 0, clip, first, available - first);
+        clipLength = available;
+        postRollRemaining = postRollSamples;
+        clipStartMs = preRollEndMs - available * 1000L / sampleRate;
+        clipReason = reason;
+    }
+
+    private void finishClip() {
+        float[] data = clip;
+        int length = clipLength;
+        long startMs = clipStartMs;
+        String reason = clipReason;
+        WavWriter.Format clipFormat = format;
+        clip = null;
+        clipLength = 0;
+        try {
+            writer.execute(() -> writeClip(data, length, startMs, reason, clipFormat));
+        } catch (RejectedExecutionException ex) {
+            // writer backlogged or released; the clip is lost
+            listener.onClipFailed(
+                    reason, new IOException("Clip writer busy or released; clip dropped", ex));
+        }
+    }
+
+    private void writeClip(
+            float[] data, int length, long startMs, String reason, WavWriter.Format clipFormat) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            listener.onClipFailed(reason, new IOException("Cannot create " + dir));
+            return;
+        }
+        File file = new File(dir, String.format(Locale.US, "event_%d.wav", startMs));
+        try {
+            WavWriter.writeFile(file, clipFormat, sampleRate, data, 0, length);
+        } catch (IOException ex) {
+            listener.onClipFailed(reason, ex);
+            return;
+        }
+        listener.onClipSaved(file, reason);
+    }
+}
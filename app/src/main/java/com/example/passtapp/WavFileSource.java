@@ -0,0 +1,82 @@
+package com.example.passtapp;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays a WAV file. Paced mode sleeps to deliver samples at the file's real-time rate, like a
+ * microphone; unpaced mode returns data as fast as it is read for throughput and soak runs.
+ */
+final class WavFileSource implements PcmSource {
+
+    private final File file;
+    private final boolean paced;
+    private final boolean loop;
+    private WavReader reader;
+    private long startNs;
+    private long delivered;
+
+    WavFileSource(File file, boolean paced, boolean loop) {
+        this.file = file;
+        this.paced = paced;
+        this.loop = loop;
+    }
+
+    @Override
+    public int getSampleRate() {
+        try {
+            ensureReader();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot open " + file, ex);
+        }
+        return reader.getSampleRate();
+    }
+
+    @Override
+    public void start() throws IOException {
+        ensureReader();
+        startNs = System.nanoTime();
+        delivered = 0;
+    }
+
+    @Override
+    public int read(float[] buffer, int offset, int length) throws IOException {
+        int read = reader.read(buffer, offset, length);
+        if (read == END_OF_STREAM && loop && reader.getTotalFrames() > 0) {
+            reader.close();
+            reader = new WavReader(file);
+            read = reader.read(buffer, offset, length);
+        }
+        if (read <= 0) {
+            return END_OF_STREAM;
+        }
+        delivered += read;
+        if (paced) {
+            startNs = SourcePacer.pace(startNs, delivered, reader.getSampleRate());
+        }
+        return read;
+    }
+
+    @Override
+    public String describe() {
+        return "文件 " + file.getName() + (paced ? "" : " (不限速)");
+    }
+
+    @Override
+    public void close() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+                // ignore close failure
+            }
+            reader = null;
+        }
+    }
+
+    private void ensureReader() throws IOException {
+        if (reader == null) {
+            reader = new WavReader(file);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.passtapp;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming RIFF/WAVE reader. Supports 8/16/24/32-bit integer PCM, 32-bit float and mono
+ * IMA-ADPCM, mixes all channels down to mono and returns samples in [-1, 1].
+ */
+final class WavReader implements Closeable {
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final InputStream input;
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+    private final int format;
+    private final long totalFrames;
+    private final int frameSize;
+    private final int blockAlign;
+    private final short[] decoded;
+    private int decodedPos;
+    private int decodedLen;
+    private final byte[] headerScratch = new byte[4];
+    private byte[] block = new byte[0];
+    private long framesRead;
+
+    WavReader(File file) throws IOException {
+        this.input = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        try {
+            if (readTag() != tag("RIFF")) {
+                throw new IOException("Not a RIFF file: " + file);
+            }
+            readIntLe();
+            if (readTag() != tag("WAVE")) {
+                throw new IOException("Not a WAVE file: " + file);
+            }
+            int fmt = -1;
+            int ch = 0;
+            int rate = 0;
+            int bits = 0;
+            int align = 0;
+            long factSamples = -1;
+            long dataBytes = -1;
+            while (dataBytes < 0) {
+                int id = readTag();
+                long size = readIntLe() & 0xffffffffL;
+                if (id == tag("fmt ")) {
+                    fmt = readShortLe();
+                    ch = readShortLe();
+                    rate = readIntLe();
+                    readIntLe(); // byte rate
+                    align = readShortLe();
+                    bits = readShortLe();
+                    long remaining = size - 16;
+                    if (fmt == ImaAdpcm.FORMAT_TAG && remaining >= 4) {
+                        readShortLe(); // cbSize
+                        readShortLe(); // samples per block, implied by block align
+                        remaining -= 4;
+                    } else if (fmt == FORMAT_EXTENSIBLE && remaining >= 10) {
+                        readShortLe(); // cbSize
+                        readShortLe(); // valid bits
+                        readIntLe(); // channel mask
+                        fmt = readShortLe(); // sub-format GUID starts with the format tag
+                        remaining -= 10;
+                    }
+                    skipFully(remaining + (size & 1));
+                } else if (id == tag("fact") && size >= 4) {
+                    factSamples = readIntLe() & 0xffffffffL;
+                    skipFully(size - 4 + (size & 1));
+                } else if (id == tag("data")) {
+                    dataBytes = size;
+                } else {
+                    skipFully(size + (size & 1));
+                }
+            }
+            this.format = fmt;
+            this.channels = ch;
+            this.sampleRate = rate;
+            this.bitsPerSample = bits;
+            if (fmt == ImaAdpcm.FORMAT_TAG) {
+                if (ch != 1 || rate <= 0 || align <= 4) {
+                    throw new IOException("Unsupported IMA-ADPCM layout in " + file);
+                }
+                long blocks = dataBytes / align;
+                long maxFrames = blocks * ImaAdpcm.samplesPerBlock(align);
+                this.blockAlign = align;
+                this.frameSize = 0;
+                this.decoded = new short[ImaAdpcm.samplesPerBlock(align)];
+                this.block = new byte[align];
+                this.totalFrames = factSamples >= 0 ? Math.min(factSamples, maxFrames) : maxFrames;
+            } else {
+                if (fmt != FORMAT_PCM && fmt != FORMAT_FLOAT) {
+                    throw new IOException("Unsupported WAV format " + fmt + " in " + file);
+                }
+                if (ch <= 0 || rate <= 0 || bits % 8 != 0 || bits == 0 || bits > 32) {
+                    throw new IOException("Malformed WAV header in " + file);
+                }
+                this.blockAlign = 0;
+                this.frameSize = ch * bits / 8;
+                this.decoded = null;
+                this.totalFrames = dataBytes / frameSize;
+            }
+        } catch (IOException ex) {
+            input.close();
+            throw ex;
+        }
+    }
+
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    int getChannels() {
+        return channels;
+    }
+
+    long getTotalFrames() {
+        return totalFrames;
+    }
+
+    /**
+     * Reads up to {@code maxFrames} mono samples into {@code out}.
+     *
+     * @return frames read, or -1 at end of data
+     */
+    int read(float[] out, int offset, int maxFrames) throws IOException {
+        if (framesRead >= totalFrames) {
+            return -1;
+        }
+        int frames = (int) Math.min(maxFrames, totalFrames - framesRead);
+        if (decoded != null) {
+            return readAdpcm(out, offset, frames);
+        }
+        int bytesPerSample = bitsPerSample / 8;
+        int needed = frames * frameSize;
+        if (block.length < needed) {
+            block = new byte[needed];
+        }
+        readFully(block, needed);
+        int pos = 0;
+        for (int f = 0; f < frames; f++) {
+            float sum = 0f;
+            for (int c = 0; c < channels; c++) {
+                sum += decodeSample(block, pos, bytesPerSample);
+                pos += bytesPerSample;
+            }
+            out[offset + f] = sum / channels;
+        }
+        framesRead += frames;
+        return frames;
+    }
+
+    private int readAdpcm(float[] out, int offset, int frames) throws IOException {
+        int produced = 0;
+        while (produced < frames) {
+            if (decodedPos == decodedLen) {
+                readFully(block, blockAlign);
+                decodedLen = ImaAdpcm.decodeBlock(block, blockAlign, decoded, 0);
+                decodedPos = 0;
+            }
+            int n = Math.min(frames - produced, decodedLen - decodedPos);
+            for (int i = 0; i < n; i++) {
+                out[offset + produced + i] = decoded[decodedPos + i] / 32768f;
+            }
+            decodedPos += n;
+            produced += n;
+        }
+        framesRead += produced;
+        return produced;
+    }
+
+    /** Decodes a whole file and resamples it to {@code targetRate}. */
+    static float[] readAll(File file, int targetRate, PolyphaseResampler.Quality quality)
+            throws IOException {
+        try (WavReader reader = new WavReader(file)) {
+            PolyphaseResampler resampler =
+                    new PolyphaseResampler(reader.getSampleRate(), targetRate, quality);
+            int frames = (int) Math.min(reader.getTotalFrames(), Integer.MAX_VALUE / 4);
+            float[] out = new float[resampler.maxOutput(frames)];
+            float[] chunk = new float[4096];
+            float[] resampled = new float[resampler.maxOutput(chunk.length)];
+            int total = 0;
+            int read;
+            while ((read = reader.read(chunk, 0, chunk.length)) > 0) {
+                int produced = resampler.process(chunk, 0, read, resampled, 0);
+                int copy = Math.min(produced, out.length - total);
+                System.arraycopy(resampled, 0, out, total, copy);
+                total += copy;
+            }
+            return total == out.length ? out : Arrays.copyOf(out, total);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private float decodeSample(byte[] b, int off, int bytes) {
+        if (format == FORMAT_FLOAT) {
+            int bits =
+                    (b[off] & 0xff)
+                            | (b[off + 1] & 0xff) << 8
+                            | (b[off + 2] & 0xff) << 16
+                            | b[off + 3] << 24;
+            return Float.intBitsToFloat(bits);
+        }
+        switch (bytes) {
+            case 1:
+                return ((b[off] & 0xff) - 128) / 128f;
+            case 2:
+                return (short) ((b[off] & 0xff) | b[off + 1] << 8) / 32768f;
+            case 3:
+                return ((b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | b[off + 2] << 16) / 8388608f;
+            default:
+                return ((b[off] & 0xff)
+                                | (b[off + 1] & 0xff) << 8
+                                | (b[off + 2] & 0xff) << 16
+                                | b[off + 3] << 24)
+                        / 2147483648f;
+        }
+    }
+
+    private int readTag() throws IOException {
+        return readIntLe();
+    }
+
+    private static int tag(String fourCc) {
+        return fourCc.charAt(0)
+                | fourCc.charAt(1) << 8
+                | fourCc.charAt(2) << 16
+                | fourCc.charAt(3) << 24;
+    }
+
+    private int readIntLe() throws IOException {
+        readFully(headerScratch, 4);
+        return (headerScratch[0] & 0xff)
+                | (headerScratch[1] & 0xff) << 8
+                | (headerScratch[2] & 0xff) << 16
+                | headerScratch[3] << 24;
+    }
+
+    private int readShortLe() throws IOException {
+        readFully(headerScratch, 2);
+        return (headerScratch[0] & 0xff) | (headerScratch[1] & 0xff) << 8;
+    }
+
+    private void readFully(byte[] buf, int len) throws IOException {
+        int off = 0;
+        while (off < len) {
+            int n = input.read(buf, off, len - off);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of WAV data");
+            }
+            off += n;
+        }
+    }
+
+    private void skipFully(long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = input.skip(bytes);
+            if (skipped <= 0) {
+                if (input.read() < 0) {
+                    throw new EOFException("Unexpected end of WAV header");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+}
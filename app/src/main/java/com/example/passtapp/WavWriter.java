@@ -0,0 +1,184 @@
+package com.example.passtapp;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming mono WAV writer for exports and recordings. Samples are appended as they come and the
+ * RIFF sizes are patched on {@link #close}, so callers never hold a whole clip in PCM form.
+ */
+final class WavWriter implements Closeable {
+
+    /** Sample encoding of the {@code data} chunk. */
+    enum Format {
+        /** 16-bit PCM, 2 bytes/sample. */
+        PCM16,
+        /** IMA-ADPCM, ~0.5 bytes/sample; plays in stock players and decodes via {@link WavReader}. */
+        IMA_ADPCM
+    }
+
+    private static final int ADPCM_BLOCK_ALIGN = 1024;
+    private static final int PCM_HEADER_SIZE = 44;
+    private static final int ADPCM_HEADER_SIZE = 60;
+
+    private final File file;
+    private final FileOutputStream fileOut;
+    private final OutputStream out;
+    private final Format format;
+    private final int sampleRate;
+    private final byte[] scratch;
+    private final short[] pending;
+    private final int[] adpcmState = new int[1];
+    private int pendingCount;
+    private long samplesWritten;
+    private long dataBytes;
+    private boolean closed;
+
+    WavWriter(File file, Format format, int sampleRate) throws IOException {
+        this.file = file;
+        this.format = format;
+        this.sampleRate = sampleRate;
+        this.fileOut = new FileOutputStream(file);
+        this.out = new BufferedOutputStream(fileOut, 64 * 1024);
+        if (format == Format.IMA_ADPCM) {
+            this.pending = new short[ImaAdpcm.samplesPerBlock(ADPCM_BLOCK_ALIGN)];
+            this.scratch = new byte[ADPCM_BLOCK_ALIGN];
+        } else {
+            this.pending = null;
+            this.scratch = new byte[8 * 1024];
+        }
+        // placeholder; real sizes are written on close
+        out.write(buildHeader(0, 0));
+    }
+
+    /**
+     * Writes a whole clip to {@code file} via a {@code .part} sibling renamed on success, so a
+     * failed write never leaves a truncated WAV under the final name.
+     */
+    static void writeFile(
+            File file, Format format, int sampleRate, float[] data, int offset, int length)
+            throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".part");
+        try {
+            try (WavWriter writer = new WavWriter(tmp, format, sampleRate)) {
+                writer.write(data, offset, length);
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmp + " to " + file.getName());
+            }
+        } catch (IOException | RuntimeException ex) {
+            tmp.delete();
+            throw ex;
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getSamplesWritten() {
+        return samplesWritten;
+    }
+
+    /** Appends samples in [-1, 1]; values outside are clipped. */
+    void write(float[] data, int offset, int length) throws IOException {
+        if (format == Format.IMA_ADPCM) {
+            for (int i = 0; i < length; i++) {
+                pending[pendingCount++] = toPcm16(data[offset + i]);
+                if (pendingCount == pending.length) {
+                    flushAdpcmBlock();
+                }
+            }
+        } else {
+            int pos = 0;
+            for (int i = 0; i < length; i++) {
+                short s = toPcm16(data[offset + i]);
+                scratch[pos++] = (byte) s;
+                scratch[pos++] = (byte) (s >> 8);
+                if (pos == scratch.length) {
+                    out.write(scratch, 0, pos);
+                    pos = 0;
+                }
+            }
+            out.write(scratch, 0, pos);
+            dataBytes += length * 2L;
+        }
+        samplesWritten += length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (format == Format.IMA_ADPCM && pendingCount > 0) {
+                // pad the last block with its final sample; the fact chunk holds the true length
+                short last = pending[pendingCount - 1];
+                while (pendingCount < pending.length) {
+                    pending[pendingCount++] = last;
+                }
+                flushAdpcmBlock();
+            }
+            out.flush();
+            fileOut.getChannel().write(ByteBuffer.wrap(buildHeader(samplesWritten, dataBytes)), 0);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void flushAdpcmBlock() throws IOException {
+        ImaAdpcm.encodeBlock(pending, 0, scratch, ADPCM_BLOCK_ALIGN, adpcmState);
+        out.write(scratch, 0, ADPCM_BLOCK_ALIGN);
+        dataBytes += ADPCM_BLOCK_ALIGN;
+        pendingCount = 0;
+    }
+
+    private byte[] buildHeader(long samples, long dataSize) {
+        boolean adpcm = format == Format.IMA_ADPCM;
+        int headerSize = adpcm ? ADPCM_HEADER_SIZE : PCM_HEADER_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] {'R', 'I', 'F', 'F'});
+        header.putInt((int) (headerSize - 8 + dataSize));
+        header.put(new byte[] {'W', 'A', 'V', 'E'});
+        header.put(new byte[] {'f', 'm', 't', ' '});
+        if (adpcm) {
+            int samplesPerBlock = ImaAdpcm.samplesPerBlock(ADPCM_BLOCK_ALIGN);
+            header.putInt(20);
+            header.putShort((short) ImaAdpcm.FORMAT_TAG);
+            header.putShort((short) 1); // mono
+            header.putInt(sampleRate);
+            header.putInt((int) ((long) sampleRate * ADPCM_BLOCK_ALIGN / samplesPerBlock));
+            header.putShort((short) ADPCM_BLOCK_ALIGN);
+            header.putShort((short) 4); // bits per sample
+            header.putShort((short) 2); // extra format bytes
+            header.putShort((short) samplesPerBlock);
+            header.put(new byte[] {'f', 'a', 'c', 't'});
+            header.putInt(4);
+            header.putInt((int) samples);
+        } else {
+            header.putInt(16); // PCM header size
+            header.putShort((short) 1); // PCM format
+            header.putShort((short) 1); // mono
+            header.putInt(sampleRate);
+            header.putInt(sampleRate * 2);
+            header.putShort((short) 2); // block align
+            header.putShort((short) 16); // bits per sample
+        }
+        header.put(new byte[] {'d', 'a', 't', 'a'});
+        header.putInt((int) dataSize);
+        return header.array();
+    }
+
+    private static short toPcm16(float v) {
+        float clamped = Math.max(-1f, Math.min(1f, v));
+        return (short) (clamped * Short.MAX_VALUE);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.passtapp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class EventDetectorTest {
+
+    private static final long WINDOW_MS = 10_000L;
+
+    private final List<String> log = new ArrayList<>();
+    private int windowsFed;
+    private final EventDetector detector =
+            new EventDetector(
+                    new EventDetector.Config(0.5f, 0.3f, 2),
+                    new EventDetector.Listener() {
+                        @Override
+                        public void onOnset(int labelIndex, long onsetMs, float confidence) {
+                            log.add("on " + labelIndex + " " + onsetMs + " " + confidence);
+                        }
+
+                        @Override
+                        public void onOffset(
+                                int labelIndex, long onsetMs, long offsetMs, float peak) {
+                            log.add(
+                                    "off " + labelIndex + " " + onsetMs + "-" + offsetMs + " "
+                                            + peak);
+                        }
+                    });
+
+    @Test
+    public void onsetNeedsTheOnThreshold() {
+        feed(0.45f, 0.49f, 0.5f);
+        // window 2 spans 20-30 s; onset is its end
+        assertEquals(Collections.singletonList("on 0 30000 0.5"), log);
+        assertEquals(1, detector.getActiveCount());
+    }
+
+    @Test
+    public void staysOnBetweenThresholds() {
+        feed(0.6f, 0.45f, 0.35f, 0.31f, 0.7f);
+        assertEquals(Collections.singletonList("on 0 10000 0.6"), log);
+        assertEquals(1, detector.getActiveCount());
+    }
+
+    @Test
+    public void offsetNeedsHoldWindowsBelowTheOffThreshold() {
+        // one dip is forgiven; the second run of two closes at the start of its first window
+        feed(0.6f, 0.2f, 0.8f, 0.3f, 0.1f, 0.9f);
+        assertEquals(3, log.size());
+        assertEquals("on 0 10000 0.6", log.get(0));
+        assertEquals("off 0 10000-30000 0.8", log.get(1));
+        assertEquals("on 0 60000 0.9", log.get(2));
+    }
+
+    @Test
+    public void flushClosesOpenEvents() {
+        feed(0.6f, 0.2f);
+        detector.flush();
+        // a below-threshold run had begun, so the event ends where it started
+        assertEquals("off 0 10000-10000 0.6", log.get(1));
+
+        log.clear();
+        feed(0.7f);
+        detector.flush();
+        assertEquals("off 0 30000-30000 0.7", log.get(1));
+        assertEquals(0, detector.getActiveCount());
+    }
+
+    @Test
+    public void perLabelOverrideReplacesSharedThresholds() {
+        EventDetector strict =
+                new EventDetector(
+                        new EventDetector.Config(0.5f, 0.3f, 1).setLabel(1, 0.9f, 0.8f),
+                        new EventDetector.Listener() {
+                            @Override
+                            public void onOnset(int labelIndex, long onsetMs, float confidence) {
+                                log.add("on " + labelIndex);
+                            }
+
+                            @Override
+                            public void onOffset(
+                                    int labelIndex, long onsetMs, long offsetMs, float peak) {
+                                log.add("off " + labelIndex);
+                            }
+                        });
+        strict.onResult(result(0, new float[] {0.6f, 0.6f}));
+        strict.onResult(result(1, new float[] {0.6f, 0.95f}));
+        strict.onResult(result(2, new float[] {0.6f, 0.7f}));
+        assertEquals(Arrays.asList("on 0", "on 1", "off 1"), log);
+    }
+
+    /** Feeds label 0 one 10 s window per value, back to back from t = 0. */
+    private void feed(float... label0) {
+        for (float p : label0) {
+            detector.onResult(result(windowsFed++, new float[] {p, 0f}));
+        }
+    }
+
+    private static SceneResult result(int window, float[] probs) {
+        long startMs = window * WINDOW_MS;
+        return new SceneResult(Collections.emptyList(), null, probs, startMs + WINDOW_MS)
+                .withWindow(startMs, startMs + WINDOW_MS);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.passtapp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LogitsCacheTest {
+
+    private static final int LOGITS = 10;
+    private static final long ENTRY_BYTES = LOGITS * 4;
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = tmp.newFolder("logits_cache");
+    }
+
+    @Test
+    public void keyDependsOnSamplesModelAndMode() {
+        float[] a = {0.1f, 0.2f, 0.3f};
+        float[] b = {0.1f, 0.2f, 0.30001f};
+        String key = LogitsCache.key(a, "model", "STANDARD");
+        assertEquals(key, LogitsCache.key(a.clone(), "model", "STANDARD"));
+        assertNotEquals(key, LogitsCache.key(b, "model", "STANDARD"));
+        assertNotEquals(key, LogitsCache.key(a, "other", "STANDARD"));
+        assertNotEquals(key, LogitsCache.key(a, "model", "MEETING"));
+    }
+
+    @Test
+    public void diskEvictsLeastRecentlyUsed() {
+        LogitsCache cache = new LogitsCache(dir, 3 * ENTRY_BYTES);
+        // disk only, so every get refreshes the entry's file time
+        cache.setMemoryEnabled(false);
+        String[] keys = new String[4];
+        long oldMs = System.currentTimeMillis() - 60_000;
+        for (int i = 0; i < 3; i++) {
+            keys[i] = key(i);
+            cache.put(keys[i], logits(i));
+            // file times are the LRU clock; space them out instead of relying on timer resolution
+            fileFor(keys[i]).setLastModified(oldMs + i * 1000);
+        }
+        assertNotNull(cache.get(keys[0]));
+
+        keys[3] = key(3);
+        cache.put(keys[3], logits(3));
+
+        // over budget: oldest files go until 90% of it, i.e. two entries are left
+        assertArrayEquals(logits(0), cache.get(keys[0]), 0f);
+        assertNull(cache.get(keys[1]));
+        assertNull(cache.get(keys[2]));
+        assertArrayEquals(logits(3), cache.get(keys[3]), 0f);
+    }
+
+    @Test
+    public void memoryFrontIsBoundedAndCanBeDropped() {
+        LogitsCache cache = new LogitsCache(dir, Long.MAX_VALUE);
+        for (int i = 0; i < 300; i++) {
+            cache.put(key(i), logits(i));
+        }
+        assertEquals(256 * ENTRY_BYTES, cache.getMemoryBytes());
+
+        cache.setMemoryEnabled(false);
+        assertEquals(0, cache.getMemoryBytes());
+        // still served from disk
+        assertArrayEquals(logits(0), cache.get(key(0)), 0f);
+        assertEquals(0, cache.getMemoryBytes());
+    }
+
+    @Test
+    public void returnsCopiesAndCountsHits() {
+        LogitsCache cache = new LogitsCache(dir, Long.MAX_VALUE);
+        assertNull(cache.get(key(1)));
+        cache.put(key(1), logits(1));
+        float[] first = cache.get(key(1));
+        first[0] = 99f;
+        assertArrayEquals(logits(1), cache.get(key(1)), 0f);
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    private File fileFor(String key) {
+        return new File(dir, key + ".bin");
+    }
+
+    private static String key(int i) {
+        return LogitsCache.key(new float[] {i}, "model", "STANDARD");
+    }
+
+    private static float[] logits(int i) {
+        float[] out = new float[LOGITS];
+        for (int k = 0; k < LOGITS; k++) {
+            out[k] = i + k / 10f;
+        }
+        return out;
+    }
+}
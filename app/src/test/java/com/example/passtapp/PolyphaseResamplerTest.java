@@ -0,0 +1,118 @@
+package com.example.passtapp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PolyphaseResamplerTest {
+
+    private static final int IN_RATE = 48_000;
+    private static final int OUT_RATE = 32_000;
+
+    @Test
+    public void passbandToneKeepsItsLevel() {
+        for (PolyphaseResampler.Quality quality : PolyphaseResampler.Quality.values()) {
+            // just inside the narrowest passband (FAST: 0.70 * 16 kHz)
+            float[] out = resample(quality, tone(IN_RATE, 10_000, IN_RATE));
+            double gainDb = toneLevelDb(out, OUT_RATE, 10_000);
+            assertEquals(quality + " passband gain", 0.0, gainDb, 0.5);
+        }
+    }
+
+    @Test
+    public void stopbandToneIsRejected() {
+        for (PolyphaseResampler.Quality quality : PolyphaseResampler.Quality.values()) {
+            // above the output Nyquist; anything left of it aliases to 12 kHz
+            float[] out = resample(quality, tone(IN_RATE, 20_000, IN_RATE));
+            double levelDb = 20 * Math.log10(rms(steadyState(out)) * Math.sqrt(2));
+            assertTrue(
+                    quality + " stopband level " + levelDb + " dB",
+                    levelDb < -(quality.attenuationDb - 6));
+        }
+    }
+
+    @Test
+    public void chunkedInputMatchesOneShot() {
+        float[] input = tone(IN_RATE, 440, IN_RATE / 2);
+        float[] whole = resample(PolyphaseResampler.Quality.BALANCED, input);
+
+        PolyphaseResampler resampler =
+                new PolyphaseResampler(IN_RATE, OUT_RATE, PolyphaseResampler.Quality.BALANCED);
+        int[] chunkSizes = {1, 2, 3, 7, 64, 333, 2048};
+        float[] chunked = new float[whole.length];
+        float[] scratch = new float[resampler.maxOutput(2048)];
+        int in = 0;
+        int out = 0;
+        for (int i = 0; in < input.length; i++) {
+            int length = Math.min(chunkSizes[i % chunkSizes.length], input.length - in);
+            int produced = resampler.process(input, in, length, scratch, 0);
+            assertTrue(produced <= resampler.maxOutput(length));
+            System.arraycopy(scratch, 0, chunked, out, produced);
+            in += length;
+            out += produced;
+        }
+        assertEquals(whole.length, out);
+        assertArrayEquals(whole, chunked, 0f);
+    }
+
+    @Test
+    public void equalRatesPassThrough() {
+        PolyphaseResampler resampler =
+                new PolyphaseResampler(OUT_RATE, OUT_RATE, PolyphaseResampler.Quality.HIGH);
+        float[] input = tone(OUT_RATE, 1_000, 1_000);
+        float[] out = new float[resampler.maxOutput(input.length)];
+        assertEquals(input.length, resampler.process(input, 0, input.length, out, 0));
+        for (int i = 0; i < input.length; i++) {
+            assertEquals(input[i], out[i], 0f);
+        }
+    }
+
+    private static float[] resample(PolyphaseResampler.Quality quality, float[] input) {
+        PolyphaseResampler resampler = new PolyphaseResampler(IN_RATE, OUT_RATE, quality);
+        float[] out = new float[resampler.maxOutput(input.length)];
+        int produced = resampler.process(input, 0, input.length, out, 0);
+        float[] trimmed = new float[produced];
+        System.arraycopy(out, 0, trimmed, 0, produced);
+        return trimmed;
+    }
+
+    private static float[] tone(int rate, double hz, int samples) {
+        float[] out = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            out[i] = (float) Math.sin(2 * Math.PI * hz * i / rate);
+        }
+        return out;
+    }
+
+    /** Drops the first and last quarter, where the filter is still filling or draining. */
+    private static float[] steadyState(float[] signal) {
+        int from = signal.length / 4;
+        float[] out = new float[signal.length / 2];
+        System.arraycopy(signal, from, out, 0, out.length);
+        return out;
+    }
+
+    private static double rms(float[] signal) {
+        double sum = 0;
+        for (float v : signal) {
+            sum += v * v;
+        }
+        return Math.sqrt(sum / signal.length);
+    }
+
+    /** Level of the {@code hz} component relative to a unit sine, by correlation. */
+    private static double toneLevelDb(float[] signal, int rate, double hz) {
+        float[] steady = steadyState(signal);
+        double re = 0;
+        double im = 0;
+        for (int i = 0; i < steady.length; i++) {
+            double phase = 2 * Math.PI * hz * i / rate;
+            re += steady[i] * Math.cos(phase);
+            im += steady[i] * Math.sin(phase);
+        }
+        double amplitude = 2 * Math.hypot(re, im) / steady.length;
+        return 20 * Math.log10(amplitude);
+    }
+}
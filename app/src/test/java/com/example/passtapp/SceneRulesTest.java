@@ -0,0 +1,112 @@
+package com.example.passtapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONException;
+import org.junit.Test;
+
+public class SceneRulesTest {
+
+    private static final int LABELS = 8;
+    private static final List<String> NAMES =
+            Arrays.asList("Speech", "Music", "Wind", "Traffic", "Dog", "Rain", "Bird", "Silence");
+    private static final SceneRules.LabelResolver RESOLVER = NAMES::indexOf;
+
+    private static final String RULES =
+            "{\"default\": {\"scene\": \"standard\", \"noiseMode\": \"STANDARD\"},"
+                    + " \"rules\": ["
+                    + "  {\"scene\": \"outdoor\", \"priority\": 50, \"noiseMode\": \"OUTDOOR\","
+                    + "   \"all\": [{\"name\": \"wind\", \"labels\": [\"Wind\", 3],"
+                    + "             \"agg\": \"sum\", \"threshold\": 0.5}]},"
+                    + "  {\"scene\": \"meeting\", \"priority\": 100, \"noiseMode\": \"MEETING\","
+                    + "   \"all\": [{\"name\": \"speech\", \"labels\": [\"Speech\"],"
+                    + "             \"threshold\": 0.5},"
+                    + "            {\"name\": \"quiet\", \"labels\": [1, 3], \"agg\": \"mean\","
+                    + "             \"op\": \"<\", \"threshold\": 0.2}]}"
+                    + " ]}";
+
+    @Test
+    public void compilesRulesInPriorityOrder() throws JSONException {
+        SceneRules rules = SceneRules.compile(RULES, LABELS, RESOLVER);
+        assertEquals(2, rules.ruleCount());
+        assertEquals(3, rules.conditionCount());
+        assertEquals("meeting", rules.sceneOf(0));
+        assertEquals("outdoor", rules.sceneOf(1));
+        assertEquals(3, rules.maxLabelIndex());
+    }
+
+    @Test
+    public void evaluatesAggregatesAndOperators() throws JSONException {
+        SceneRules rules = SceneRules.compile(RULES, LABELS, RESOLVER);
+        float[] values = new float[rules.conditionCount()];
+
+        float[] meeting = probs(0.9f, 0.1f, 0f, 0.1f);
+        int rule = rules.evaluate(meeting, values);
+        assertEquals("meeting", rules.sceneOf(rule));
+        assertEquals("MEETING", rules.noiseModeOf(rule));
+        assertEquals(0.1f, values[1], 1e-6f); // mean of Music and Traffic
+
+        // speech over loud traffic: "quiet" fails, so the lower-priority rule gets its turn
+        float[] street = probs(0.9f, 0.1f, 0.3f, 0.4f);
+        rule = rules.evaluate(street, values);
+        assertEquals("outdoor", rules.sceneOf(rule));
+        assertEquals(0.7f, values[2], 1e-6f); // sum of Wind and Traffic
+    }
+
+    @Test
+    public void noMatchFallsBackToDefault() throws JSONException {
+        SceneRules rules = SceneRules.compile(RULES, LABELS, RESOLVER);
+        int rule = rules.evaluate(probs(0f, 0f, 0f, 0f), new float[rules.conditionCount()]);
+        assertEquals(SceneRules.NO_MATCH, rule);
+        assertEquals("standard", rules.sceneOf(rule));
+        assertEquals("STANDARD", rules.noiseModeOf(rule));
+    }
+
+    @Test
+    public void badFileIsRejectedAndPreviousRulesStayUsable() throws JSONException {
+        SceneRules good = SceneRules.compile(RULES, LABELS, RESOLVER);
+        String[] broken = {
+            "{\"rules\": [",
+            RULES.replace("\"Wind\"", "\"Thunder\""),
+            RULES.replace("[1, 3]", "[1, " + LABELS + "]"),
+            RULES.replace("[1, 3]", "[-1, 3]"),
+            RULES.replace("\"sum\"", "\"median\""),
+        };
+        for (String json : broken) {
+            try {
+                SceneRules.compile(json, LABELS, RESOLVER);
+                fail("compiled: " + json);
+            } catch (JSONException expected) {
+                // the caller keeps serving the last good rules
+            }
+        }
+        float[] values = new float[good.conditionCount()];
+        assertEquals("meeting", good.sceneOf(good.evaluate(probs(0.9f, 0f, 0f, 0f), values)));
+    }
+
+    @Test
+    public void bundledRulesCompile() throws IOException, JSONException {
+        File asset = new File("src/main/assets/scene_rules.json");
+        String json = new String(Files.readAllBytes(asset.toPath()), StandardCharsets.UTF_8);
+        SceneRules rules = SceneRules.compile(json, 527, label -> -1);
+        assertTrue(rules.ruleCount() > 0);
+        assertTrue(rules.maxLabelIndex() < 527);
+    }
+
+    private static float[] probs(float speech, float music, float wind, float traffic) {
+        float[] p = new float[LABELS];
+        p[0] = speech;
+        p[1] = music;
+        p[2] = wind;
+        p[3] = traffic;
+        return p;
+    }
+}
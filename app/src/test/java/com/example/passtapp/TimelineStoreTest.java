@@ -0,0 +1,111 @@
+package com.example.passtapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TimelineStoreTest {
+
+    private static final int LABELS = 4;
+    // 64-byte header + 5 records of 8 (time) + 24 (scene) + 4 * 4 (probs) bytes
+    private static final long SEGMENT_BYTES = 64 + 5 * 48;
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+    private TimelineStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = tmp.newFolder("timeline");
+        store = new TimelineStore(dir, SEGMENT_BYTES, 10);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void rangeQuerySpansSegmentRolls() throws IOException {
+        // records at 1..12 s, label 2 = t / 100, across three 5-record segments
+        for (int i = 1; i <= 12; i++) {
+            store.append(i * 1000L, "s" + i, probs(i / 100f));
+        }
+        assertEquals(3, segmentCount());
+
+        TimelineStore.Series one = store.querySeries(2, 3_000, 9_000, 1);
+        assertEquals(7, one.count[0]);
+        assertEquals(0.09f, one.max[0], 1e-6f);
+        assertEquals(0.06f, one.mean[0], 1e-6f);
+
+        // one bucket per second: every record lands in its own bucket
+        TimelineStore.Series perSecond = store.querySeries(2, 4_000, 11_999, 8);
+        for (int b = 0; b < 8; b++) {
+            assertEquals(1, perSecond.count[b]);
+            assertEquals((b + 4) / 100f, perSecond.max[b], 1e-6f);
+        }
+
+        List<TimelineStore.SceneEntry> scenes = store.queryScenes(4_500, 11_000, 100);
+        assertEquals(7, scenes.size());
+        assertEquals("s5", scenes.get(0).scene);
+        assertEquals(11_000L, scenes.get(6).timestampMs);
+    }
+
+    @Test
+    public void emptyBucketsAreNaN() throws IOException {
+        store.append(1_000, "a", probs(0.5f));
+        store.append(9_000, "b", probs(0.7f));
+        TimelineStore.Series series = store.querySeries(2, 0, 9_999, 10);
+        assertEquals(1, series.count[1]);
+        assertEquals(1, series.count[9]);
+        assertEquals(0, series.count[5]);
+        assertTrue(Float.isNaN(series.max[5]));
+        assertTrue(Float.isNaN(series.mean[5]));
+    }
+
+    @Test
+    public void oldSegmentsArePruned() throws IOException {
+        store.close();
+        store = new TimelineStore(dir, SEGMENT_BYTES, 2);
+        for (int i = 1; i <= 12; i++) {
+            store.append(i * 1000L, "s", probs(0.1f));
+        }
+        assertEquals(2, segmentCount());
+        // the first segment (1..5 s) is gone
+        assertEquals(7, store.querySeries(2, 0, 20_000, 1).count[0]);
+    }
+
+    @Test
+    public void reopenContinuesTheLastSegment() throws IOException {
+        for (int i = 1; i <= 3; i++) {
+            store.append(i * 1000L, "s", probs(0.2f));
+        }
+        store.close();
+        store = new TimelineStore(dir, SEGMENT_BYTES, 10);
+        store.append(4_000, "s", probs(0.4f));
+        assertEquals(1, segmentCount());
+        TimelineStore.Series series = store.querySeries(2, 0, 5_000, 1);
+        assertEquals(4, series.count[0]);
+        assertEquals(0.4f, series.max[0], 1e-6f);
+    }
+
+    private int segmentCount() {
+        String[] names = dir.list((d, name) -> name.endsWith(".bin"));
+        return names != null ? names.length : 0;
+    }
+
+    private static float[] probs(float label2) {
+        float[] p = new float[LABELS];
+        p[2] = label2;
+        return p;
+    }
+}
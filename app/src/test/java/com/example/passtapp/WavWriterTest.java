@@ -0,0 +1,105 @@
+package com.example.passtapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WavWriterTest {
+
+    private static final int RATE = 32_000;
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void adpcmRoundTripKeepsSnr() throws IOException {
+        float[] input = sweep(RATE * 2);
+        float[] decoded = roundTrip(WavWriter.Format.IMA_ADPCM, input);
+        assertEquals(input.length, decoded.length);
+        double snr = snrDb(input, decoded);
+        assertTrue("ADPCM SNR " + snr + " dB", snr > 25);
+    }
+
+    @Test
+    public void pcmRoundTripIsNearLossless() throws IOException {
+        float[] input = sweep(RATE / 2);
+        float[] decoded = roundTrip(WavWriter.Format.PCM16, input);
+        assertEquals(input.length, decoded.length);
+        assertTrue(snrDb(input, decoded) > 80);
+    }
+
+    @Test
+    public void adpcmFactChunkHoldsTrueFrameCount() throws IOException {
+        // not a multiple of the block, so the last block is padded
+        int samples = ImaAdpcm.samplesPerBlock(1024) * 3 + 17;
+        File file = tmp.newFile("fact.wav");
+        WavWriter.writeFile(file, WavWriter.Format.IMA_ADPCM, RATE, sweep(samples), 0, samples);
+
+        ByteBuffer header =
+                ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        // RIFF header (12) + fmt chunk (8 + 20)
+        assertEquals("fact", tag(header, 40));
+        assertEquals(samples, header.getInt(48));
+        assertEquals(file.length(), header.getInt(4) + 8L);
+
+        try (WavReader reader = new WavReader(file)) {
+            assertEquals(samples, reader.getTotalFrames());
+        }
+    }
+
+    private float[] roundTrip(WavWriter.Format format, float[] input) throws IOException {
+        File file = tmp.newFile(format + ".wav");
+        WavWriter.writeFile(file, format, RATE, input, 0, input.length);
+        try (WavReader reader = new WavReader(file)) {
+            assertEquals(RATE, reader.getSampleRate());
+            float[] out = new float[(int) reader.getTotalFrames()];
+            int filled = 0;
+            int read;
+            while (filled < out.length
+                    && (read = reader.read(out, filled, out.length - filled)) > 0) {
+                filled += read;
+            }
+            assertEquals(out.length, filled);
+            return out;
+        }
+    }
+
+    /** Half-scale log sweep from 100 Hz to 8 kHz, speech-band content the codec must follow. */
+    private static float[] sweep(int samples) {
+        float[] out = new float[samples];
+        double phase = 0;
+        for (int i = 0; i < samples; i++) {
+            double hz = 100 * Math.pow(80, (double) i / samples);
+            phase += 2 * Math.PI * hz / RATE;
+            out[i] = (float) (0.5 * Math.sin(phase));
+        }
+        return out;
+    }
+
+    private static double snrDb(float[] reference, float[] actual) {
+        double signal = 0;
+        double noise = 0;
+        for (int i = 0; i < reference.length; i++) {
+            double error = actual[i] - reference[i];
+            signal += reference[i] * reference[i];
+            noise += error * error;
+        }
+        return 10 * Math.log10(signal / Math.max(noise, 1e-20));
+    }
+
+    private static String tag(ByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,108 @@
+#!/usr/bin/env bash
+# Replays a local directory of WAV files through the app's analysis path on a connected device
+# and pulls the JSON report back. Pass --update-baseline to overwrite the stored baseline and
+# --use-cache to serve unchanged windows from the on-device logits cache (fast rule re-scoring).
+# Gives up after BENCHMARK_TIMEOUT_S seconds (default 3600) or when the app process dies.
+# Needs a debug build installed: the harness entry point (DebugHooksActivity) is debug-only.
+#
+# Against an existing baseline, every combo must keep top-1/top-5/scene agreement at or above
+# --min-top1/--min-top5/--min-scene (defaults 0.90/0.85/0.95) and its p50 latency within
+# --max-latency-increase percent of the baseline's (default 25; skipped with --use-cache, whose
+# latencies are cache hits). Any breach is listed and the script exits 1.
+set -euo pipefail
+
+CORPUS="${1:?usage: run_benchmark.sh <wav-dir> [--update-baseline] [--use-cache] [--min-top1 F] [--min-top5 F] [--min-scene F] [--max-latency-increase PCT]}"
+UPDATE=false
+CACHE=false
+MIN_TOP1=0.90
+MIN_TOP5=0.85
+MIN_SCENE=0.95
+MAX_LATENCY_INCREASE=25
+shift
+while (( $# > 0 )); do
+  case "$1" in
+    --update-baseline) UPDATE=true ;;
+    --use-cache) CACHE=true ;;
+    --min-top1) MIN_TOP1="${2:?--min-top1 needs a value}"; shift ;;
+    --min-top5) MIN_TOP5="${2:?--min-top5 needs a value}"; shift ;;
+    --min-scene) MIN_SCENE="${2:?--min-scene needs a value}"; shift ;;
+    --max-latency-increase) MAX_LATENCY_INCREASE="${2:?--max-latency-increase needs a value}"; shift ;;
+    *) echo "unknown option: $1" >&2; exit 1 ;;
+  esac
+  shift
+done
+PKG=com.example.passtapp
+REMOTE=/sdcard/Android/data/$PKG/files/benchmark
+
+adb shell mkdir -p "$REMOTE"
+adb shell "rm -f $REMOTE/*.wav"
+adb push "$CORPUS"/*.wav "$REMOTE/" >/dev/null
+if [[ -f "$CORPUS/baseline.json" && "$UPDATE" == false ]]; then
+  adb push "$CORPUS/baseline.json" "$REMOTE/" >/dev/null
+fi
+adb shell rm -f "$REMOTE/report.json"
+adb shell am start -S -n "$PKG/.DebugHooksActivity" \
+  --es benchmark_corpus "$REMOTE" \
+  --ez benchmark_update_baseline "$UPDATE" \
+  --ez benchmark_use_cache "$CACHE" >/dev/null
+
+TIMEOUT_S="${BENCHMARK_TIMEOUT_S:-3600}"
+DEADLINE=$((SECONDS + TIMEOUT_S))
+echo "waiting for $REMOTE/report.json (timeout ${TIMEOUT_S}s) ..."
+sleep 5
+until adb shell "test -f $REMOTE/report.json" 2>/dev/null; do
+  if ! adb shell pidof "$PKG" >/dev/null 2>&1; then
+    echo "app process died before writing a report" >&2
+    exit 1
+  fi
+  if (( SECONDS >= DEADLINE )); then
+    echo "timed out after ${TIMEOUT_S}s" >&2
+    exit 1
+  fi
+  sleep 5
+done
+adb pull "$REMOTE/report.json" "$CORPUS/report.json" >/dev/null
+if grep -q '"error"' "$CORPUS/report.json"; then
+  echo "benchmark failed: $(grep '"error"' "$CORPUS/report.json")" >&2
+  exit 1
+fi
+adb pull "$REMOTE/baseline.json" "$CORPUS/baseline.json" >/dev/null
+echo "report: $CORPUS/report.json"
+
+python3 - "$CORPUS/report.json" "$MIN_TOP1" "$MIN_TOP5" "$MIN_SCENE" "$MAX_LATENCY_INCREASE" <<'PY'
+import json
+import sys
+
+report_path, min_top1, min_top5, min_scene, max_increase = sys.argv[1:6]
+report = json.load(open(report_path))
+limits = [("top1Agreement", float(min_top1)), ("top5Agreement", float(min_top5)),
+          ("sceneAgreement", float(min_scene))]
+gate_latency = "logitsCache" not in report
+breaches = []
+compared = 0
+for combo in report["combos"]:
+    key = combo["key"]
+    if combo.get("baselineWindows", 0) == 0:
+        continue
+    compared += 1
+    padded = ""
+    if "zeroPaddedToMs" in combo:
+        padded = " (zero-padded to %d ms)" % combo["zeroPaddedToMs"]
+    for metric, floor in limits:
+        if combo[metric] < floor:
+            breaches.append("%s%s: %s %.3f < %.3f" % (key, padded, metric, combo[metric], floor))
+    base = combo.get("baselineLatencyP50Ms")
+    if gate_latency and base:
+        p50 = combo["latencyMs"]["p50"]
+        ceiling = base * (1 + float(max_increase) / 100)
+        if p50 > ceiling:
+            breaches.append("%s: p50 %.1f ms > %.1f ms (baseline %.1f ms + %s%%)"
+                            % (key, p50, ceiling, base, max_increase))
+if compared == 0:
+    print("no baseline to compare against; gates skipped")
+    sys.exit(0)
+for line in breaches:
+    print("REGRESSION " + line, file=sys.stderr)
+print("%d combos compared, %d regressions" % (compared, len(breaches)))
+sys.exit(1 if breaches else 0)
+PY
@@ -0,0 +1,43 @@
+#!/usr/bin/env bash
+# Runs the in-app leak soak (SoakHarness) for the given number of minutes on a connected device,
+# pulls the JSON report back and exits non-zero if any metric grew past its limit. Gives up
+# SOAK_GRACE_S seconds (default 600) after the soak should have ended, or when the app process dies.
+# Needs a debug build installed: the harness entry point (DebugHooksActivity) is debug-only.
+set -euo pipefail
+
+MINUTES="${1:?usage: run_soak.sh <minutes> [out-dir]}"
+OUT="${2:-.}"
+PKG=com.example.passtapp
+REMOTE=/sdcard/Android/data/$PKG/files/soak
+
+adb shell mkdir -p "$REMOTE"
+adb shell rm -f "$REMOTE/report.json"
+adb shell am start -S -n "$PKG/.DebugHooksActivity" --ei soak_minutes "$MINUTES" >/dev/null
+
+GRACE_S="${SOAK_GRACE_S:-600}"
+DEADLINE=$((SECONDS + MINUTES * 60 + GRACE_S))
+echo "soaking for $MINUTES min, waiting for $REMOTE/report.json ..."
+sleep 5
+until adb shell "test -f $REMOTE/report.json" 2>/dev/null; do
+  if ! adb shell pidof "$PKG" >/dev/null 2>&1; then
+    echo "app process died before writing a report" >&2
+    exit 1
+  fi
+  if (( SECONDS >= DEADLINE )); then
+    echo "timed out ${GRACE_S}s after the soak should have ended" >&2
+    exit 1
+  fi
+  sleep 10
+done
+adb pull "$REMOTE/report.json" "$OUT/soak_report.json" >/dev/null
+echo "report: $OUT/soak_report.json"
+if grep -q '"error"' "$OUT/soak_report.json"; then
+  echo "soak failed: $(grep '"error"' "$OUT/soak_report.json")" >&2
+  exit 1
+fi
+if grep -q '"passed": true' "$OUT/soak_report.json"; then
+  echo "PASS"
+else
+  echo "FAIL"
+  exit 1
+fi